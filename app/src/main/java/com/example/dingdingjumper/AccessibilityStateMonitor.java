@@ -0,0 +1,118 @@
+package com.example.dingdingjumper;
+
+import android.content.ComponentName;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.Settings;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 无障碍服务启用状态的缓存。通过ContentObserver监听系统设置，变化时解析一次已启用服务列表，
+ * 之后查询只读内存；按ComponentName精确比较，不会误匹配名字更长的其他服务。
+ */
+final class AccessibilityStateMonitor {
+
+    private static final String TAG = "AccessibilityState";
+
+    interface Listener {
+        /**
+         * 在主线程回调。
+         */
+        void onServiceEnabledChanged(boolean enabled);
+    }
+
+    private static AccessibilityStateMonitor instance;
+
+    private final ContentResolver resolver;
+    private final ComponentName serviceComponent;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile Set<ComponentName> enabledServices = Collections.emptySet();
+    private volatile boolean serviceEnabled;
+
+    static synchronized AccessibilityStateMonitor getInstance(Context context) {
+        if (instance == null) {
+            instance = new AccessibilityStateMonitor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AccessibilityStateMonitor(Context context) {
+        resolver = context.getContentResolver();
+        serviceComponent = new ComponentName(context, DingDingAccessibilityService.class);
+
+        ContentObserver observer = new ContentObserver(new Handler(Looper.getMainLooper())) {
+            @Override
+            public void onChange(boolean selfChange) {
+                refresh();
+            }
+        };
+        resolver.registerContentObserver(
+                Settings.Secure.getUriFor(Settings.Secure.ENABLED_ACCESSIBILITY_SERVICES), false, observer);
+        resolver.registerContentObserver(
+                Settings.Secure.getUriFor(Settings.Secure.ACCESSIBILITY_ENABLED), false, observer);
+        refresh();
+    }
+
+    boolean isServiceEnabled() {
+        return serviceEnabled;
+    }
+
+    Set<ComponentName> getEnabledServices() {
+        return enabledServices;
+    }
+
+    void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void refresh() {
+        Set<ComponentName> services = parseEnabledServices(
+                Settings.Secure.getString(resolver, Settings.Secure.ENABLED_ACCESSIBILITY_SERVICES));
+        boolean enabled = Settings.Secure.getInt(resolver, Settings.Secure.ACCESSIBILITY_ENABLED, 0) == 1
+                && services.contains(serviceComponent);
+
+        enabledServices = services;
+        if (enabled == serviceEnabled) {
+            return;
+        }
+        serviceEnabled = enabled;
+        Log.d(TAG, "无障碍服务" + (enabled ? "已启用" : "已停用"));
+
+        for (Listener listener : listeners) {
+            try {
+                listener.onServiceEnabledChanged(enabled);
+            } catch (Exception e) {
+                Log.e(TAG, "无障碍状态变化通知失败", e);
+            }
+        }
+    }
+
+    private static Set<ComponentName> parseEnabledServices(String value) {
+        if (TextUtils.isEmpty(value)) {
+            return Collections.emptySet();
+        }
+        Set<ComponentName> services = new HashSet<>();
+        for (String name : value.split(":")) {
+            ComponentName component = ComponentName.unflattenFromString(name);
+            if (component != null) {
+                services.add(component);
+            }
+        }
+        return Collections.unmodifiableSet(services);
+    }
+}
@@ -3,93 +3,129 @@ package com.example.dingdingjumper;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Handler;
 import android.os.Looper;
-import android.os.PowerManager;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.Toast;
 
-import java.util.Random;
+import java.io.IOException;
 
 public class AlarmReceiver extends BroadcastReceiver {
     private static final String TAG = "AlarmReceiver";
-    private static final String PREF_NAME = "DingDingJumperPrefs";
-    private static final String PREF_DELAY_SECONDS = "delaySeconds";
+    private static final long WAKE_LOCK_TIMEOUT = 10 * 60 * 1000L; // 10分钟，仅作为兜底
 
-    private Random random = new Random();
+    public static final String EXTRA_SCHEDULED_TIME = "scheduledTime";
+    public static final String EXTRA_JITTER_SECONDS = "jitterSeconds";
+    public static final String EXTRA_FIRE_TIME = "fireTime";
 
     @Override
     public void onReceive(Context context, Intent intent) {
         String action = intent.getAction();
         Log.d(TAG, "接收到闹钟广播: " + action);
 
-        // 确保设备唤醒
-        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
-        PowerManager.WakeLock wakeLock = null;
+        // 确保设备唤醒，租约绑定到本次打卡任务，任务结束时由无障碍服务释放
+        final long runId = ClockRunIds.next();
+        final WakeLockLeaseManager leaseManager = WakeLockLeaseManager.getInstance(context);
 
         try {
-            wakeLock = powerManager.newWakeLock(
-                    PowerManager.PARTIAL_WAKE_LOCK, "DingDingJumper:AlarmWakeLock");
-            wakeLock.acquire(10*60*1000L); // 10分钟
-
-            // 获取延迟设置
-            SharedPreferences prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-            int maxDelaySeconds = prefs.getInt(PREF_DELAY_SECONDS, 60);
-
-            // 生成随机延迟秒数（0到maxDelaySeconds之间）
-            final int delaySeconds = random.nextInt(maxDelaySeconds + 1);
+            leaseManager.acquire(runId, TAG, WAKE_LOCK_TIMEOUT);
 
             // 根据不同的闹钟类型设置操作类型
             final String clockType;
-            if (action != null) {
-                if (action.equals(MainActivity.ACTION_CHECK_IN_ALARM)) {
-                    clockType = "上班";
+            if (AlarmScheduler.ACTION_CLOCK_ALARM.equals(action)) {
+                clockType = intent.getStringExtra("type");
+            } else if (MainActivity.ACTION_CHECK_IN_ALARM.equals(action)) {
+                clockType = "上班";
+            } else if (MainActivity.ACTION_CHECK_OUT_ALARM.equals(action)) {
+                clockType = "下班";
+            } else {
+                clockType = null;
+            }
+
+            if (clockType == null) {
+                // 未知操作类型
+                leaseManager.release(runId);
+                return;
+            }
+
+            // 主线程上只使用Intent中的数据把指令交给服务，不读取磁盘；
+            // 随机延迟和工作日判断都在登记闹钟时完成
+            int jitterSeconds = intent.getIntExtra(EXTRA_JITTER_SECONDS, 0);
+            long scheduledTime = intent.getLongExtra(EXTRA_SCHEDULED_TIME, 0);
+
+            final ClockCommand command = ClockCommand.forAlarm(runId, clockType, scheduledTime,
+                    System.currentTimeMillis(), jitterSeconds, SystemClock.elapsedRealtimeNanos());
+
+            Log.d(TAG, clockType + "打卡闹钟触发，随机延迟" + jitterSeconds + "秒，实际偏差"
+                    + (scheduledTime > 0 ? (System.currentTimeMillis() - scheduledTime) + "ms" : "未知"));
+            final boolean dispatched = ClockCommandBus.getInstance().dispatch(command);
+
+            if (dispatched) {
+                try {
+                    Toast.makeText(context, clockType + "打卡开始执行", Toast.LENGTH_SHORT).show();
+                } catch (Exception e) {
+                    Log.e(TAG, "显示Toast失败", e);
+                }
+            }
+
+            // 读取设置、登记下一个时段等磁盘操作在工作线程上完成，广播在完成后才结束
+            final Context appContext = context.getApplicationContext();
+            final PendingResult pendingResult = goAsync();
+            ClockWorker.getInstance().getHandler().post(new Runnable() {
+                @Override
+                public void run() {
                     try {
-                        Toast.makeText(context, "上班打卡时间到，将在" + delaySeconds + "秒后执行", Toast.LENGTH_LONG).show();
+                        if (!dispatched) {
+                            handleUndelivered(appContext, command, leaseManager);
+                        }
+
+                        // AlarmManager中只有一个闹钟，触发后登记下一个时段
+                        AlarmScheduler.getInstance(appContext).rearm();
                     } catch (Exception e) {
-                        Log.e(TAG, "显示Toast失败", e);
+                        Log.e(TAG, "登记下一个时段失败", e);
+                    } finally {
+                        pendingResult.finish();
                     }
-                } else if (action.equals(MainActivity.ACTION_CHECK_OUT_ALARM)) {
-                    clockType = "下班";
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "处理闹钟广播时发生异常", e);
+            leaseManager.release(runId);
+        }
+    }
+
+    /**
+     * 在工作线程上处理没有送达服务的指令。记录保存成功时租约保持到服务连接后
+     * recoverPendingRuns()处理这条记录，服务一直没有连接时由租约超时释放。
+     */
+    private static void handleUndelivered(final Context context, ClockCommand command,
+                                          WakeLockLeaseManager leaseManager) {
+        // 无障碍服务未启用时没有组件能完成打卡，只提示
+        if (AlarmScheduler.getInstance(context).isDegraded()) {
+            leaseManager.release(command.runId);
+            Log.w(TAG, "无障碍服务未启用，跳过" + command.type + "打卡");
+            final String text = "无障碍服务未启用，" + command.type + "打卡未执行";
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
                     try {
-                        Toast.makeText(context, "下班打卡时间到，将在" + delaySeconds + "秒后执行", Toast.LENGTH_LONG).show();
+                        Toast.makeText(context, text, Toast.LENGTH_LONG).show();
                     } catch (Exception e) {
                         Log.e(TAG, "显示Toast失败", e);
                     }
-                } else {
-                    // 未知操作类型
-                    clockType = null;
                 }
+            });
+            return;
+        }
 
-                // 如果有有效的操作类型，延迟执行
-                if (clockType != null) {
-                    // 创建处理器进行延迟
-                    Handler handler = new Handler(Looper.getMainLooper());
-                    handler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            Intent serviceIntent = new Intent(DingDingAccessibilityService.ACTION_PERFORM_CLOCK);
-                            serviceIntent.putExtra("type", clockType);
-                            serviceIntent.putExtra("delaySeconds", 0); // 已经延迟过，不需要再延迟
-
-                            Log.d(TAG, "延迟" + delaySeconds + "秒后发送广播: " + serviceIntent.getAction());
-                            context.sendBroadcast(serviceIntent);
-
-                            try {
-                                Toast.makeText(context, clockType + "打卡开始执行", Toast.LENGTH_SHORT).show();
-                            } catch (Exception e) {
-                                Log.e(TAG, "显示Toast失败", e);
-                            }
-                        }
-                    }, delaySeconds * 1000L); // 转换为毫秒
-                }
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "处理闹钟广播时发生异常", e);
-        } finally {
-            // 不立即释放唤醒锁，让延迟执行的任务有机会完成
-            // 唤醒锁会在10分钟后自动释放，或者由AccessibilityService接手
+        // 无障碍服务进程内还没有实例（例如进程刚被闹钟拉起），记下这次打卡，服务连接后补打
+        try {
+            PendingRunStore.getInstance(context.getFilesDir()).save(new PendingRun(command.runId, command.type,
+                    command.scheduledTime, command.fireTime, command.jitterSeconds, command.fireTime));
+        } catch (IOException e) {
+            Log.e(TAG, "保存待执行打卡失败", e);
+            leaseManager.release(command.runId);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,236 @@
+package com.example.dingdingjumper;
+
+import android.annotation.SuppressLint;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * 打卡闹钟调度。所有时段编译成ScheduleEngine，AlarmManager中始终只登记下一次打卡这一个闹钟，
+ * 闹钟触发后由AlarmReceiver调用rearm()登记下一个时段。
+ * 记录本进程最后一次登记的闹钟，计算结果不变时不再调用AlarmManager。
+ * 无障碍服务被关闭时标记为降级状态，闹钟照常登记，但触发时不再发起打卡。
+ */
+final class AlarmScheduler {
+
+    private static final String TAG = "AlarmScheduler";
+
+    static final String ACTION_CLOCK_ALARM = "com.example.dingdingjumper.CLOCK_ALARM";
+
+    private static final String PREF_NAME = "DingDingJumperPrefs";
+
+    // 当前登记的闹钟，重新登记同一次打卡时沿用已生成的随机延迟
+    private static final String PREF_ARMED_SCHEDULED_TIME = "armedScheduledTime";
+    private static final String PREF_ARMED_JITTER_SECONDS = "armedJitterSeconds";
+    private static final String PREF_ARMED_TYPE = "armedType";
+    private static final String PREF_LEGACY_ALARMS_CLEARED = "legacyAlarmsCleared";
+
+    private static final int REQUEST_CODE = 0;
+    private static final int LEGACY_CHECK_IN_REQUEST_CODE = 1;
+    private static final int LEGACY_CHECK_OUT_REQUEST_CODE = 2;
+
+    private static AlarmScheduler instance;
+
+    private final Context context;
+    private final AlarmManager alarmManager;
+    private final SharedPreferences prefs;
+    private final AlarmPlanner planner = new AlarmPlanner(new JitterPlanner(new Random()));
+    private final TimeSource timeSource = SystemTimeSource.INSTANCE;
+
+    // 本进程最后一次登记到AlarmManager的闹钟；进程重启后为空，第一次rearm()总会重新登记
+    private ArmedAlarm armed;
+    private boolean cancelled;
+    private int armCount;
+    private int skipCount;
+    private int cancelCount;
+    private volatile boolean degraded;
+
+    static synchronized AlarmScheduler getInstance(Context context) {
+        if (instance == null) {
+            instance = new AlarmScheduler(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AlarmScheduler(Context context) {
+        this.context = context;
+        alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+
+        AccessibilityStateMonitor accessibilityMonitor = AccessibilityStateMonitor.getInstance(context);
+        degraded = !accessibilityMonitor.isServiceEnabled();
+        accessibilityMonitor.addListener(new AccessibilityStateMonitor.Listener() {
+            @Override
+            public void onServiceEnabledChanged(boolean enabled) {
+                degraded = !enabled;
+                Log.d(TAG, enabled ? "无障碍服务已恢复" : "无障碍服务已关闭，调度进入降级状态");
+            }
+        });
+    }
+
+    /**
+     * 按当前设置登记下一次打卡。定时任务未启用或没有任何时段时取消闹钟并返回null。
+     */
+    synchronized ArmedAlarm rearm() {
+        AppSettings settings = SettingsStore.getInstance(context).get();
+        if (!settings.alarmEnabled) {
+            cancel();
+            return null;
+        }
+
+        ScheduleEngine engine = new ScheduleEngine(loadSlots(settings), TimeZone.getDefault(),
+                WorkdayCalendarStore.getInstance(context).get());
+        ArmedAlarm alarm = planner.plan(engine, loadSavedAlarm(), timeSource.currentTimeMillis());
+        if (alarm == null) {
+            cancel();
+            return null;
+        }
+
+        if (alarm.sameAs(armed)) {
+            skipCount++;
+            Log.d(TAG, "下次" + alarm.type + "打卡未变化，跳过登记");
+            return armed;
+        }
+
+        clearLegacyAlarms();
+        setAlarm(alarm);
+        // 提前解析钉钉的启动Activity，闹钟触发时直接启动
+        TargetAppResolver.getInstance(context).prewarm();
+        prefs.edit()
+                .putLong(PREF_ARMED_SCHEDULED_TIME, alarm.scheduledTime)
+                .putInt(PREF_ARMED_JITTER_SECONDS, alarm.jitterSeconds)
+                .putString(PREF_ARMED_TYPE, alarm.type)
+                .apply();
+        armed = alarm;
+        cancelled = false;
+        armCount++;
+        Log.d(TAG, "已登记下次" + alarm.type + "打卡，随机延迟" + alarm.jitterSeconds + "秒");
+        return alarm;
+    }
+
+    synchronized void cancel() {
+        if (cancelled) {
+            skipCount++;
+            return;
+        }
+        alarmManager.cancel(createPendingIntent(null));
+        prefs.edit()
+                .remove(PREF_ARMED_SCHEDULED_TIME)
+                .remove(PREF_ARMED_JITTER_SECONDS)
+                .remove(PREF_ARMED_TYPE)
+                .apply();
+        clearLegacyAlarms();
+        armed = null;
+        cancelled = true;
+        cancelCount++;
+    }
+
+    /**
+     * 本进程最后一次登记的闹钟，没有登记过或已取消时为null。
+     */
+    synchronized ArmedAlarm getArmedAlarm() {
+        return armed;
+    }
+
+    /**
+     * 无障碍服务未启用时为true，此时闹钟触发也无法完成打卡。
+     */
+    boolean isDegraded() {
+        return degraded;
+    }
+
+    synchronized int getArmCount() {
+        return armCount;
+    }
+
+    synchronized int getSkipCount() {
+        return skipCount;
+    }
+
+    synchronized int getCancelCount() {
+        return cancelCount;
+    }
+
+    /**
+     * 上一次登记并保存的闹钟，进程重启后也能沿用其随机延迟。是否仍然有效由AlarmPlanner判断。
+     */
+    private ArmedAlarm loadSavedAlarm() {
+        long scheduledTime = prefs.getLong(PREF_ARMED_SCHEDULED_TIME, 0);
+        int jitterSeconds = prefs.getInt(PREF_ARMED_JITTER_SECONDS, -1);
+        String type = prefs.getString(PREF_ARMED_TYPE, null);
+        if (scheduledTime <= 0 || jitterSeconds < 0 || type == null) {
+            return null;
+        }
+        return new ArmedAlarm(scheduledTime, jitterSeconds, type, false);
+    }
+
+    static List<ScheduleSlot> loadSlots(AppSettings settings) {
+        // 默认只在法定工作日打卡，跳过周末和节假日
+        List<ScheduleSlot> slots = new ArrayList<>();
+        if (settings.workdaysOnly) {
+            slots.add(ScheduleSlot.onWorkdays(settings.checkInHour, settings.checkInMinute, "上班",
+                    settings.delaySeconds));
+            slots.add(ScheduleSlot.onWorkdays(settings.checkOutHour, settings.checkOutMinute, "下班",
+                    settings.delaySeconds));
+        } else {
+            slots.add(new ScheduleSlot(ScheduleSlot.EVERY_DAY, settings.checkInHour, settings.checkInMinute,
+                    "上班", settings.delaySeconds));
+            slots.add(new ScheduleSlot(ScheduleSlot.EVERY_DAY, settings.checkOutHour, settings.checkOutMinute,
+                    "下班", settings.delaySeconds));
+        }
+        try {
+            slots.addAll(ScheduleSlot.parseLines(settings.extraSlots));
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "额外打卡时段格式错误，已忽略", e);
+        }
+        return slots;
+    }
+
+    @SuppressLint("ScheduleExactAlarm")
+    private void setAlarm(ArmedAlarm alarm) {
+        PendingIntent pendingIntent = createPendingIntent(alarm);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, alarm.getFireTime(), pendingIntent);
+        } else {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, alarm.getFireTime(), pendingIntent);
+        }
+    }
+
+    private PendingIntent createPendingIntent(ArmedAlarm alarm) {
+        // 闹钟本身已包含随机延迟，AlarmReceiver收到后直接执行
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        intent.setAction(ACTION_CLOCK_ALARM);
+        if (alarm != null) {
+            intent.putExtra("type", alarm.type);
+            intent.putExtra(AlarmReceiver.EXTRA_SCHEDULED_TIME, alarm.scheduledTime);
+            intent.putExtra(AlarmReceiver.EXTRA_JITTER_SECONDS, alarm.jitterSeconds);
+        }
+        return PendingIntent.getBroadcast(
+                context, REQUEST_CODE, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    /**
+     * 旧版本为上下班各登记一个闹钟，升级后取消一次。
+     */
+    private void clearLegacyAlarms() {
+        if (prefs.getBoolean(PREF_LEGACY_ALARMS_CLEARED, false)) {
+            return;
+        }
+        alarmManager.cancel(PendingIntent.getBroadcast(context, LEGACY_CHECK_IN_REQUEST_CODE,
+                new Intent(MainActivity.ACTION_CHECK_IN_ALARM),
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE));
+        alarmManager.cancel(PendingIntent.getBroadcast(context, LEGACY_CHECK_OUT_REQUEST_CODE,
+                new Intent(MainActivity.ACTION_CHECK_OUT_ALARM),
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE));
+        prefs.edit().putBoolean(PREF_LEGACY_ALARMS_CLEARED, true).apply();
+    }
+}
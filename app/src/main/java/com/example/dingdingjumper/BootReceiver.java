@@ -0,0 +1,46 @@
+package com.example.dingdingjumper;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * 开机、系统时间或时区变化、应用升级后重新登记打卡闹钟。
+ * AlarmManager中的闹钟在重启和升级后会丢失，时区变化后已登记的时间也不再正确。
+ * 只根据已保存的设置重新计算，不启动界面。
+ */
+public class BootReceiver extends BroadcastReceiver {
+    private static final String TAG = "BootReceiver";
+    private static final long BUDGET_NANOS = 50 * 1000000L; // 50ms
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (!Intent.ACTION_BOOT_COMPLETED.equals(action)
+                && !Intent.ACTION_TIME_CHANGED.equals(action)
+                && !Intent.ACTION_TIMEZONE_CHANGED.equals(action)
+                && !Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)) {
+            return;
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        try {
+            ArmedAlarm alarm = AlarmScheduler.getInstance(context).rearm();
+            long elapsedMs = (SystemClock.elapsedRealtimeNanos() - start) / 1000000L;
+            if (alarm == null) {
+                Log.d(TAG, action + ": 定时任务未启用，耗时" + elapsedMs + "ms");
+            } else {
+                Log.d(TAG, action + ": 已重新登记" + alarm.type + "打卡，耗时" + elapsedMs + "ms");
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "重新登记闹钟失败: " + action, e);
+        }
+
+        long elapsed = SystemClock.elapsedRealtimeNanos() - start;
+        if (elapsed > BUDGET_NANOS) {
+            Log.w(TAG, action + "处理耗时" + elapsed / 1000000L + "ms，超出" + BUDGET_NANOS / 1000000L + "ms预算");
+        }
+    }
+}
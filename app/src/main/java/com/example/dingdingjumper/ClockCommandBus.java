@@ -0,0 +1,123 @@
+package com.example.dingdingjumper;
+
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * 进程内的打卡指令通道。无障碍服务运行时把自己登记为接收方，AlarmReceiver和MainActivity
+ * 直接调用dispatch()，不经过system_server转发广播。
+ * 其他进程（例如adb或同签名的应用）仍可以发送ACTION_PERFORM_CLOCK广播，服务注册接收器时要求
+ * PERMISSION_PERFORM_CLOCK签名权限，其他应用无法伪造。
+ * 两条路径的送达耗时分别统计，可以在日志中对比。
+ */
+final class ClockCommandBus {
+
+    private static final String TAG = "ClockCommandBus";
+
+    static final String PERMISSION_PERFORM_CLOCK = "com.example.dingdingjumper.permission.PERFORM_CLOCK";
+
+    static final String EXTRA_TYPE = "type";
+    static final String EXTRA_DELAY_SECONDS = "delaySeconds";
+    static final String EXTRA_IS_TEST = "isTest";
+    static final String EXTRA_RUN_ID = "runId";
+    static final String EXTRA_ISSUED_AT_NANOS = "issuedAtNanos";
+
+    interface Receiver {
+        /**
+         * 在调用dispatch()的线程上回调，接收方需要自己切换到工作线程。
+         */
+        void onClockCommand(ClockCommand command);
+    }
+
+    private static ClockCommandBus instance;
+
+    private volatile Receiver receiver;
+
+    private int directCount;
+    private long directTotalNanos;
+    private long directMaxNanos;
+    private int broadcastCount;
+    private long broadcastTotalNanos;
+    private long broadcastMaxNanos;
+
+    static synchronized ClockCommandBus getInstance() {
+        if (instance == null) {
+            instance = new ClockCommandBus();
+        }
+        return instance;
+    }
+
+    private ClockCommandBus() {
+    }
+
+    void register(Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    void unregister(Receiver receiver) {
+        if (this.receiver == receiver) {
+            this.receiver = null;
+        }
+    }
+
+    /**
+     * 把指令直接交给无障碍服务。服务没有运行时返回false，指令被丢弃，由调用方处理。
+     */
+    boolean dispatch(ClockCommand command) {
+        Receiver current = receiver;
+        if (current == null) {
+            Log.w(TAG, "无障碍服务未运行，" + command.type + "打卡指令无法送达");
+            return false;
+        }
+        current.onClockCommand(command);
+        return true;
+    }
+
+    /**
+     * 记录指令从发出到服务开始处理的耗时。
+     */
+    synchronized void recordHop(boolean direct, long nanos) {
+        if (direct) {
+            directCount++;
+            directTotalNanos += nanos;
+            directMaxNanos = Math.max(directMaxNanos, nanos);
+        } else {
+            broadcastCount++;
+            broadcastTotalNanos += nanos;
+            broadcastMaxNanos = Math.max(broadcastMaxNanos, nanos);
+        }
+    }
+
+    /**
+     * 例如 "直接调用3次，平均0.4ms，最大0.9ms；广播1次，平均38.2ms，最大38.2ms"
+     */
+    synchronized String describeMetrics() {
+        return "直接调用" + describe(directCount, directTotalNanos, directMaxNanos)
+                + "；广播" + describe(broadcastCount, broadcastTotalNanos, broadcastMaxNanos);
+    }
+
+    private static String describe(int count, long totalNanos, long maxNanos) {
+        if (count == 0) {
+            return "0次";
+        }
+        return count + "次，平均" + String.format("%.1f", totalNanos / 1e6 / count)
+                + "ms，最大" + String.format("%.1f", maxNanos / 1e6) + "ms";
+    }
+
+    /**
+     * 把其他进程发来的ACTION_PERFORM_CLOCK广播转换为指令。没有发出时间时按收到时计算。
+     */
+    static ClockCommand fromIntent(Intent intent) {
+        String type = intent.getStringExtra(EXTRA_TYPE);
+        return new ClockCommand(
+                intent.getLongExtra(EXTRA_RUN_ID, ClockRunIds.NO_RUN),
+                type != null ? type : "未知",
+                intent.getBooleanExtra(EXTRA_IS_TEST, false),
+                intent.getIntExtra(EXTRA_DELAY_SECONDS, 0),
+                intent.getLongExtra(AlarmReceiver.EXTRA_SCHEDULED_TIME, 0),
+                intent.getLongExtra(AlarmReceiver.EXTRA_FIRE_TIME, 0),
+                intent.getIntExtra(AlarmReceiver.EXTRA_JITTER_SECONDS, 0),
+                intent.getLongExtra(EXTRA_ISSUED_AT_NANOS, SystemClock.elapsedRealtimeNanos()));
+    }
+}
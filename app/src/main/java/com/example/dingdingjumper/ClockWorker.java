@@ -0,0 +1,44 @@
+package com.example.dingdingjumper;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+/**
+ * 打卡流程专用的工作线程。状态机推进、通知构建、包管理查询等都在这里执行，
+ * 主线程繁忙时（例如低端机上刚亮屏）不会拖慢钉钉的启动。进程存活期间一直运行。
+ */
+final class ClockWorker {
+
+    private static ClockWorker instance;
+
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    static synchronized ClockWorker getInstance() {
+        if (instance == null) {
+            instance = new ClockWorker();
+        }
+        return instance;
+    }
+
+    private ClockWorker() {
+        // 比后台线程优先级高一些，和前台交互线程相同
+        thread = new HandlerThread("ClockWorker", Process.THREAD_PRIORITY_FOREGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    Looper getLooper() {
+        return thread.getLooper();
+    }
+
+    Handler getHandler() {
+        return handler;
+    }
+
+    boolean isCurrentThread() {
+        return Looper.myLooper() == thread.getLooper();
+    }
+}
@@ -1,33 +1,34 @@
 package com.example.dingdingjumper;
 
 import android.accessibilityservice.AccessibilityService;
-import android.accessibilityservice.GestureDescription;
-import android.app.Notification;
+import android.accessibilityservice.AccessibilityServiceInfo;
+import android.app.ActivityManager;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
+import android.content.ActivityNotFoundException;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.pm.PackageManager;
-import android.graphics.Path;
 import android.os.Build;
 import android.os.Handler;
-import android.os.Looper;
-import android.os.PowerManager;
+import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
 import android.widget.Toast;
 
-import androidx.core.app.NotificationCompat;
-
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 public class DingDingAccessibilityService extends AccessibilityService {
 
     private static final String TAG = "DingDingService";
-    private static final String DINGTALK_PACKAGE_NAME = "com.alibaba.android.rimet";
+    private static final String DINGTALK_PACKAGE_NAME = TargetAppResolver.TARGET_PACKAGE_NAME;
     public static final String ACTION_PERFORM_CLOCK = "com.example.dingdingjumper.PERFORM_CLOCK";
     public static final String ACTION_CHECK_IN_ALARM = "com.example.dingdingjumper.CHECK_IN_ALARM";
     public static final String ACTION_CHECK_OUT_ALARM = "com.example.dingdingjumper.CHECK_OUT_ALARM";
@@ -35,16 +36,100 @@ public class DingDingAccessibilityService extends AccessibilityService {
     private static final String CHANNEL_ID = "DingDingAccessibilityChannel";
     private static final int NOTIFICATION_ID = 100;
 
-    private static final int RETURN_TO_APP_DELAY = 13000; // 延长返回应用的延迟到13秒
+    private static final int RETURN_TO_APP_DELAY = 13000; // 没有足够的启动耗时数据或执行操作脚本时，等待钉钉的上限
+    private static final int DINGTALK_MIN_STAY_DELAY = 3000; // 钉钉至少停留3秒，给极速打卡留出时间
+    private static final int DINGTALK_IDLE_DELAY = 1500; // 钉钉界面1.5秒内无变化视为空闲
+    private static final int RETURN_SETTLE_DELAY = 500; // 通过Activity返回前先等钉钉的界面操作结束
+    private static final int RETURN_POLL_INTERVAL = 50; // 检查钉钉是否已离开前台的间隔
+    private static final int RETURN_TIMEOUT = 2000; // 超过2秒钉钉仍在前台视为返回失败
+
+    private static final long WAKE_LOCK_TIMEOUT = 10 * 60 * 1000L; // 10分钟，仅作为兜底
+
+    private static final int MSG_DINGTALK_EVENT = 1; // arg1为事件类型
 
     private Handler handler;
+    private MainLooperProbe mainLooperProbe;
     private NotificationManager notificationManager;
-    private PowerManager.WakeLock wakeLock;
-    private String currentOperation = "";
-    private boolean isProcessing = false;
+    private NotificationPipeline notifications;
+    private WakeLockLeaseManager leaseManager;
+    private TargetAppResolver targetApp;
+    private ClockRunJournal journal;
+    private LaunchTimingStore launchTiming;
+    private PendingRunStore pendingRuns;
+    private long currentRunId = ClockRunIds.NO_RUN;
+
+    // 打卡请求队列，同一时间只执行一个任务
+    private final ClockRequestQueue requestQueue = new ClockRequestQueue(SystemTimeSource.INSTANCE);
     private boolean receiverRegistered = false;
+
+    // 本实例已接收、写入PendingRunStore但还没结束的正式打卡，恢复时跳过
+    private final Set<Long> trackedRunIds = new HashSet<>();
     private Random random = new Random();
 
+    // 只关心钉钉的窗口切换和内容变化事件，没有打卡任务时全部丢弃
+    private final AccessibilityEventFilter eventFilter = new AccessibilityEventFilter(
+            AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED | AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED,
+            DINGTALK_PACKAGE_NAME);
+
+    // 离开钉钉前在界面上核对打卡结果
+    private final PunchResultVerifier verifier = new PunchResultVerifier(DINGTALK_PACKAGE_NAME);
+
+    // 当前打卡任务的操作脚本，没有配置脚本时为null
+    private GestureScriptRunner scriptRunner;
+
+    // 当前打卡任务的状态机，没有任务时为null
+    private ClockRun currentRun;
+    private boolean eventDrivenWait = false;
+
+    // 本次启动方式和从启动到钉钉窗口出现在前台的耗时，用于更新本机的启动耗时估计
+    private LaunchTimingEstimator.Start launchStart;
+    private long readyMillis = -1;
+
+    // 本次任务离开钉钉的方式，进入RETURNING时从设置中读取
+    private ReturnStrategy returnStrategy = ReturnStrategy.HOME;
+
+    // 等待钉钉的超时上限，覆盖WAITING_FOREGROUND和VERIFYING两个阶段
+    private final Runnable waitTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (currentRun != null && isWaitingForDingTalk(currentRun.getState())) {
+                Log.d(TAG, "等待钉钉超时，按固定延迟返回");
+                verifyPunchResult();
+                enterReturning();
+            }
+        }
+    };
+
+    // 当前阶段到期后推进到下一阶段
+    private final Runnable stepRunnable = new Runnable() {
+        @Override
+        public void run() {
+            advanceRun();
+        }
+    };
+
+    // 返回后轮询钉钉是否已离开前台
+    private final Runnable returnCheckRunnable = new Runnable() {
+        @Override
+        public void run() {
+            checkReturned();
+        }
+    };
+
+    // 进程内的打卡指令，AlarmReceiver和MainActivity直接调用
+    private final ClockCommandBus.Receiver commandReceiver = new ClockCommandBus.Receiver() {
+        @Override
+        public void onClockCommand(final ClockCommand command) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    handleClockCommand(command, true);
+                }
+            });
+        }
+    };
+
+    // 其他进程发来的打卡广播，注册时要求签名权限
     private BroadcastReceiver clockReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
@@ -52,47 +137,7 @@ public class DingDingAccessibilityService extends AccessibilityService {
                 String action = intent.getAction();
                 Log.d(TAG, "接收到广播: " + action);
                 if (ACTION_PERFORM_CLOCK.equals(action)) {
-                    final String type = intent.getStringExtra("type");
-                    final int delaySeconds = intent.getIntExtra("delaySeconds", 0);
-                    final boolean isTest = intent.getBooleanExtra("isTest", false);
-
-                    if (delaySeconds > 0) {
-                        // 计算实际延迟秒数（0到delaySeconds之间的随机值）
-                        final int actualDelay = isTest ? random.nextInt(delaySeconds + 1) : 0;
-
-                        // 显示延迟通知
-                        showNotification("准备执行打卡",
-                                type + "打卡将在" + actualDelay + "秒后执行");
-
-                        try {
-                            Toast.makeText(DingDingAccessibilityService.this,
-                                    type + "打卡将在" + actualDelay + "秒后执行",
-                                    Toast.LENGTH_SHORT).show();
-                        } catch (Exception e) {
-                            Log.e(TAG, "显示Toast失败", e);
-                        }
-
-                        // 延迟执行
-                        handler.postDelayed(new Runnable() {
-                            @Override
-                            public void run() {
-                                handler.post(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        performClock(type != null ? type : "未知");
-                                    }
-                                });
-                            }
-                        }, actualDelay * 1000L); // 转换为毫秒
-                    } else {
-                        // 无需延迟，直接执行
-                        handler.post(new Runnable() {
-                            @Override
-                            public void run() {
-                                performClock(type != null ? type : "未知");
-                            }
-                        });
-                    }
+                    handleClockCommand(ClockCommandBus.fromIntent(intent), false);
                 } else if (ACTION_CHECK_IN_ALARM.equals(action)) {
                     // 这些由AlarmReceiver处理
                     Log.d(TAG, "收到上班闹钟，已由AlarmReceiver处理");
@@ -105,25 +150,104 @@ public class DingDingAccessibilityService extends AccessibilityService {
         }
     };
 
+    /**
+     * 在工作线程上处理打卡指令，direct表示通过ClockCommandBus直接送达。
+     */
+    private void handleClockCommand(ClockCommand command, boolean direct) {
+        ClockCommandBus bus = ClockCommandBus.getInstance();
+        long hopNanos = SystemClock.elapsedRealtimeNanos() - command.issuedAtNanos;
+        bus.recordHop(direct, hopNanos);
+        Log.d(TAG, command.type + "打卡指令经" + (direct ? "直接调用" : "广播") + "送达，耗时"
+                + hopNanos / 1000 + "us，" + bus.describeMetrics());
+
+        long runId = command.runId != ClockRunIds.NO_RUN ? command.runId : ClockRunIds.next();
+        final ClockRun run = new ClockRun(runId, command.type, SystemTimeSource.INSTANCE);
+        final boolean isTest = command.isTest;
+
+        // 计算实际延迟秒数（0到delaySeconds之间的随机值）
+        int delaySeconds = command.maxDelaySeconds;
+        final int actualDelay = isTest && delaySeconds > 0 ? random.nextInt(delaySeconds + 1) : 0;
+        long now = System.currentTimeMillis();
+        if (command.hasSchedule()) {
+            run.setSchedule(command.scheduledTime, command.fireTime, command.jitterSeconds);
+        } else {
+            run.setSchedule(now, now + actualDelay * 1000L, actualDelay);
+        }
+
+        // 正式打卡在任何等待之前先落盘，进程被杀后由recoverPendingRuns()恢复
+        if (!isTest) {
+            savePendingRun(run, now + actualDelay * 1000L);
+        }
+
+        if (actualDelay > 0) {
+            // 显示延迟通知
+            notifications.post("准备执行打卡",
+                    command.type + "打卡将在" + actualDelay + "秒后执行",
+                    command.type + "打卡将在" + actualDelay + "秒后执行",
+                    Toast.LENGTH_SHORT);
+
+            // 延迟执行
+            handler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    submitClock(run, isTest);
+                }
+            }, actualDelay * 1000L); // 转换为毫秒
+        } else {
+            // 无需延迟，直接执行
+            submitClock(run, isTest);
+        }
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
         Log.d(TAG, "服务onCreate");
 
-        // 初始化Handler，确保在主线程上
-        handler = new Handler(Looper.getMainLooper());
+        // 打卡流程在专用工作线程上执行，只有Toast等界面操作回到主线程。
+        // 服务使用自己的Handler，onDestroy时只清理服务自己的消息，不影响界面等其他使用工作线程的代码
+        handler = new Handler(ClockWorker.getInstance().getLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message msg) {
+                if (msg.what != MSG_DINGTALK_EVENT) {
+                    return false;
+                }
+                handleDingTalkEvent(msg.arg1);
+                return true;
+            }
+        });
+        mainLooperProbe = new MainLooperProbe(handler);
 
         // 创建通知通道
         createNotificationChannel();
 
         // 获取通知管理器
         notificationManager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        notifications = new NotificationPipeline(this, notificationManager, handler, CHANNEL_ID, NOTIFICATION_ID);
+
+        // 唤醒锁租约管理
+        leaseManager = WakeLockLeaseManager.getInstance(this);
+
+        // 钉钉启动Activity缓存
+        targetApp = TargetAppResolver.getInstance(this);
+
+        // 本机钉钉启动耗时
+        launchTiming = LaunchTimingStore.getInstance(this);
 
-        // 获取唤醒锁
-        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        wakeLock = powerManager.newWakeLock(
-                PowerManager.PARTIAL_WAKE_LOCK,
-                "DingDingJumper:AccessibilityWakeLock");
+        // 打卡日志，打开和映射文件在工作线程上完成，journal只在工作线程上访问
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    journal = ClockRunJournal.getInstance(getFilesDir());
+                } catch (Exception e) {
+                    Log.e(TAG, "打开打卡日志失败", e);
+                }
+            }
+        });
+
+        // 待执行的正式打卡
+        pendingRuns = PendingRunStore.getInstance(getFilesDir());
 
         try {
             // 注册广播接收器
@@ -131,33 +255,40 @@ public class DingDingAccessibilityService extends AccessibilityService {
             filter.addAction(ACTION_PERFORM_CLOCK);
             filter.addAction(ACTION_CHECK_IN_ALARM);
             filter.addAction(ACTION_CHECK_OUT_ALARM);
-            registerReceiver(clockReceiver, filter);
+            registerReceiver(clockReceiver, filter, ClockCommandBus.PERMISSION_PERFORM_CLOCK, handler);
             receiverRegistered = true;
             Log.d(TAG, "广播接收器注册成功");
         } catch (Exception e) {
             Log.e(TAG, "注册广播接收器失败", e);
         }
 
-        // 显示通知
-        showNotification("钉钉跳转器服务运行中", "自动打卡服务已启动，等待打卡时间到达");
+        // 本进程内的打卡指令直接交给服务
+        ClockCommandBus.getInstance().register(commandReceiver);
 
-        // 显示Toast表示服务已启动
-        try {
-            Toast.makeText(this, "钉钉跳转器辅助服务已启动", Toast.LENGTH_SHORT).show();
-        } catch (Exception e) {
-            Log.e(TAG, "显示Toast失败", e);
-        }
+        // 显示通知和Toast表示服务已启动
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                notifications.post("钉钉跳转器服务运行中", "自动打卡服务已启动，等待打卡时间到达",
+                        "钉钉跳转器辅助服务已启动", Toast.LENGTH_SHORT);
+            }
+        });
     }
 
     @Override
     public void onDestroy() {
         Log.d(TAG, "服务onDestroy");
 
+        ClockCommandBus.getInstance().unregister(commandReceiver);
+
         try {
-            // 取消所有延迟任务
+            // 取消服务的所有延迟任务
             if (handler != null) {
                 handler.removeCallbacksAndMessages(null);
             }
+            if (mainLooperProbe != null) {
+                mainLooperProbe.stop();
+            }
 
             // 注销广播接收器
             if (receiverRegistered) {
@@ -169,30 +300,89 @@ public class DingDingAccessibilityService extends AccessibilityService {
             Log.e(TAG, "注销广播接收器失败", e);
         }
 
-        // 释放唤醒锁
-        try {
-            if (wakeLock != null && wakeLock.isHeld()) {
-                wakeLock.release();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "释放唤醒锁失败", e);
-        }
+        // 任务状态只在工作线程上访问，清理也交给工作线程
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                currentRun = null;
+                cancelScript();
+
+                // 释放唤醒锁
+                if (currentRunId != ClockRunIds.NO_RUN) {
+                    leaseManager.release(currentRunId);
+                    currentRunId = ClockRunIds.NO_RUN;
+                }
 
-        // 移除通知
-        try {
-            if (notificationManager != null) {
-                notificationManager.cancel(NOTIFICATION_ID);
+                // 移除通知
+                notifications.cancel();
             }
-        } catch (Exception e) {
-            Log.e(TAG, "取消通知失败", e);
-        }
+        });
 
         super.onDestroy();
     }
 
     @Override
     public void onAccessibilityEvent(AccessibilityEvent event) {
-        // 在这里可以处理辅助功能事件
+        if (event == null) {
+            return;
+        }
+
+        // 在主线程上只做过滤，通过的事件用消息池中的Message交给工作线程处理，不分配新对象
+        int eventType = event.getEventType();
+        if (!eventFilter.accept(eventType, event.getPackageName())) {
+            return;
+        }
+        handler.obtainMessage(MSG_DINGTALK_EVENT, eventType, 0).sendToTarget();
+    }
+
+    private void handleDingTalkEvent(int eventType) {
+        if (currentRun == null) {
+            return;
+        }
+
+        ClockRunState state = currentRun.getState();
+        if (isWaitingForDingTalk(state) && readyMillis < 0
+                && eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+            readyMillis = currentRun.getNanosSince(ClockRunState.LAUNCHING) / 1000000;
+        }
+        if (state == ClockRunState.WAITING_FOREGROUND
+                && eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+                && (eventDrivenWait || scriptRunner != null)) {
+            // 钉钉窗口已切换到前台，有操作脚本时先执行脚本，否则开始等待界面空闲
+            currentRun.moveTo(ClockRunState.VERIFYING);
+            state = ClockRunState.VERIFYING;
+            if (scriptRunner != null) {
+                startScript();
+                return;
+            }
+        }
+
+        if (scriptRunner != null && scriptRunner.isRunning()) {
+            scriptRunner.onAccessibilityEvent(eventType);
+            return;
+        }
+
+        if (eventDrivenWait && state == ClockRunState.VERIFYING) {
+            // 每次界面变化都重新计时，直到钉钉安静下来
+            long elapsed = currentRun.getNanosSince(ClockRunState.WAITING_FOREGROUND) / 1000000;
+            long delay = Math.max(DINGTALK_IDLE_DELAY, DINGTALK_MIN_STAY_DELAY - elapsed);
+            handler.removeCallbacks(stepRunnable);
+            handler.postDelayed(stepRunnable, delay);
+        }
+    }
+
+    private void startScript() {
+        scriptRunner.start(new GestureScriptRunner.Callback() {
+            @Override
+            public void onScriptFinished(boolean success, String message) {
+                Log.d(TAG, "操作脚本结束: " + message);
+                if (currentRun != null && currentRun.getState() == ClockRunState.VERIFYING) {
+                    // 脚本执行完后等钉钉界面稳定再核对结果并返回
+                    handler.removeCallbacks(stepRunnable);
+                    handler.postDelayed(stepRunnable, DINGTALK_IDLE_DELAY);
+                }
+            }
+        });
     }
 
     @Override
@@ -206,205 +396,557 @@ public class DingDingAccessibilityService extends AccessibilityService {
         super.onServiceConnected();
         Log.d(TAG, "服务连接成功");
 
-        // 服务连接时的设置
+        // 空闲时不订阅任何事件，钉钉正常使用时系统不会把事件投递到本进程
+        setEventDeliveryEnabled(false);
+
+        // 服务连接时的设置，与onCreate的Toast合并为一条
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                notifications.toast("钉钉跳转器辅助服务已启动", Toast.LENGTH_SHORT);
+            }
+        });
+
+        // 进程被杀或服务被系统重启前没有执行完的打卡
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                recoverPendingRuns();
+            }
+        });
+    }
+
+    private void savePendingRun(ClockRun run, long dueTime) {
+        trackedRunIds.add(run.getRunId());
         try {
-            Toast.makeText(this, "钉钉跳转器辅助服务已启动", Toast.LENGTH_SHORT).show();
-        } catch (Exception e) {
-            Log.e(TAG, "显示Toast失败", e);
+            pendingRuns.save(new PendingRun(run.getRunId(), run.getType(), run.getScheduledTime(),
+                    run.getFireTime(), run.getJitterSeconds(), dueTime));
+        } catch (IOException e) {
+            Log.e(TAG, "保存待执行打卡失败，进程被杀后无法恢复: " + run.getRunId(), e);
         }
     }
 
-    private void performClock(final String type) {
-        Log.d(TAG, "执行打卡操作: " + type);
+    private void forgetPendingRun(long runId) {
+        if (trackedRunIds.remove(runId)) {
+            pendingRuns.remove(runId);
+        }
+    }
 
-        // 防止重复处理
-        if (isProcessing) {
-            Log.d(TAG, "当前已有任务正在执行: " + currentOperation);
-            showNotification("操作进行中", "当前已有" + currentOperation + "打卡任务正在执行，请稍后");
+    /**
+     * 扫描PendingRunStore中不属于本实例的记录：还没到执行时间的继续等待，已过执行时间但仍在
+     * 有效期内的立即补打，超过有效期的记为失败。恢复的任务在打卡日志中带有FLAG_RECOVERED。
+     * AlarmReceiver在同一进程内为记录持有的租约沿用同一任务ID，继续执行的任务在打卡结束时释放，
+     * 不再执行的在这里释放。
+     */
+    private void recoverPendingRuns() {
+        List<PendingRun> records;
+        try {
+            records = pendingRuns.list();
+        } catch (IOException e) {
+            Log.e(TAG, "读取待执行打卡失败", e);
             return;
         }
 
-        isProcessing = true;
-        currentOperation = type;
-
-        // 获取唤醒锁，确保操作完成
-        try {
-            if (wakeLock != null && !wakeLock.isHeld()) {
-                wakeLock.acquire(10*60*1000L); // 10分钟
+        long now = System.currentTimeMillis();
+        for (PendingRun record : records) {
+            if (trackedRunIds.contains(record.runId)) {
+                continue;
             }
-        } catch (Exception e) {
-            Log.e(TAG, "获取唤醒锁失败", e);
+            if (journal != null && journal.containsRun(record.runId)) {
+                // 写入日志后、删除记录前进程被杀，这次打卡已经结束
+                Log.d(TAG, record.type + "打卡已在日志中，删除残留记录，任务ID: " + record.runId);
+                pendingRuns.remove(record.runId);
+                leaseManager.release(record.runId);
+                continue;
+            }
+            final ClockRun run = new ClockRun(record.runId, record.type, SystemTimeSource.INSTANCE);
+            run.setSchedule(record.scheduledTime, record.fireTime, record.jitterSeconds);
+            run.markRecovered();
+            trackedRunIds.add(record.runId);
+
+            switch (record.recoveryAt(now)) {
+                case RESUME:
+                    long remaining = record.dueTime - now;
+                    Log.d(TAG, "恢复" + record.type + "打卡，" + remaining + "ms后执行，任务ID: " + record.runId);
+                    handler.postDelayed(new Runnable() {
+                        @Override
+                        public void run() {
+                            submitClock(run, false);
+                        }
+                    }, remaining);
+                    break;
+                case CATCH_UP:
+                    Log.d(TAG, "补打" + record.type + "打卡，已超过执行时间" + (now - record.dueTime)
+                            + "ms，任务ID: " + record.runId);
+                    showNotification("补打卡", record.type + "打卡在进程重启前未完成，现在补打");
+                    submitClock(run, false);
+                    break;
+                default:
+                    Log.w(TAG, record.type + "打卡已超过有效期，放弃执行，任务ID: " + record.runId);
+                    run.fail("进程重启后已超出有效期");
+                    if (journal != null) {
+                        journal.append(run);
+                    }
+                    forgetPendingRun(record.runId);
+                    leaseManager.release(record.runId);
+                    String text = record.type + "打卡在进程重启前未完成且已超出有效期，请手动打卡";
+                    notifications.postNow("打卡未执行", text, text, Toast.LENGTH_LONG);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 提交打卡请求。空闲时立即执行；忙时排队，同类型的请求合并；
+     * 正式打卡到达时如果正在执行测试，中断测试让正式打卡先执行。
+     */
+    private void submitClock(ClockRun run, boolean isTest) {
+        String type = run.getType();
+        if (requestQueue.offer(run, isTest) == ClockRequestQueue.Offer.COALESCED) {
+            Log.d(TAG, type + "打卡请求已合并到正在执行或排队的同类请求，任务ID: " + run.getRunId());
+            leaseManager.release(run.getRunId());
+            forgetPendingRun(run.getRunId());
+            return;
+        }
+
+        if (currentRun == null) {
+            runNextRequest();
+        } else if (requestQueue.shouldPreemptActive() && currentRun.getState() != ClockRunState.COOLDOWN) {
+            Log.d(TAG, "正式打卡到达，中断正在执行的测试");
+            failRun("被" + type + "打卡中断");
+        } else {
+            Log.d(TAG, type + "打卡请求排队等待，" + requestQueue.describeMetrics());
+            showNotification("打卡排队中", type + "打卡将在当前任务结束后执行");
         }
+    }
+
+    private void runNextRequest() {
+        if (currentRun != null) {
+            return;
+        }
+        ClockRequestQueue.Request next = requestQueue.startNext();
+        if (next == null) {
+            // 队列已空，停止接收事件
+            setEventDeliveryEnabled(false);
+            return;
+        }
+        performClock(next.run);
+    }
+
+    private void performClock(ClockRun run) {
+        String type = run.getType();
+        long runId = run.getRunId();
+        Log.d(TAG, "执行打卡操作: " + type + "，任务ID: " + runId);
+
+        currentRunId = runId;
+        setEventDeliveryEnabled(true);
+        mainLooperProbe.start();
+
+        // 获取唤醒锁，确保操作完成
+        leaseManager.acquire(runId, TAG, WAKE_LOCK_TIMEOUT);
 
         // 显示通知
         showNotification("开始执行打卡", type + "打卡任务开始执行");
 
+        currentRun = run;
+        currentRun.moveTo(ClockRunState.LAUNCHING);
+
+        TargetAppResolver.Resolution target = targetApp.get();
+        if (!target.installed) {
+            // 钉钉未安装
+            Log.e(TAG, "钉钉应用未安装");
+            failRun("未安装钉钉应用，请先安装");
+            return;
+        }
+
         // 启动钉钉
-        if (isAppInstalled(DINGTALK_PACKAGE_NAME)) {
-            try {
-                Log.d(TAG, "启动钉钉应用");
-                launchDingTalk();
-
-                // 更新通知
-                showNotification("打卡中", "正在执行" + type + "打卡，将在5秒后返回");
-
-                // 延迟后跳回应用
-                handler.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            Log.d(TAG, "尝试返回应用");
-
-                            // 方法1：使用MainActivity的类直接启动
-                            Intent launchIntent = new Intent(DingDingAccessibilityService.this, MainActivity.class);
-                            launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK |
-                                    Intent.FLAG_ACTIVITY_SINGLE_TOP |
-                                    Intent.FLAG_ACTIVITY_CLEAR_TOP);
-                            launchIntent.putExtra("from_service", true);
-                            launchIntent.putExtra("timestamp", System.currentTimeMillis()); // 添加时间戳避免intent被系统视为重复
-
-                            // 延长检查应用返回成功的时间
-                            handler.postDelayed(new Runnable() {
-                                @Override
-                                public void run() {
-                                    startActivity(launchIntent);
-                                    Log.d(TAG, "成功返回应用 - 方法1");
-
-                                    // 延长完成任务的时间
-                                    handler.postDelayed(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            finishTask(type, true);
-                                        }
-                                    }, 2000); // 延长到2秒
-                                }
-                            }, 500); // 先延迟500ms再启动应用
-
-                        } catch (Exception e1) {
-                            Log.e(TAG, "方法1返回应用失败，尝试方法2", e1);
-
-                            try {
-                                // 方法2：使用应用启动器启动
-                                PackageManager pm = getPackageManager();
-                                Intent launchIntent = pm.getLaunchIntentForPackage(getPackageName());
-                                if (launchIntent != null) {
-                                    launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK |
-                                            Intent.FLAG_ACTIVITY_CLEAR_TOP |
-                                            Intent.FLAG_ACTIVITY_SINGLE_TOP);
-                                    launchIntent.putExtra("from_service", true);
-                                    launchIntent.putExtra("timestamp", System.currentTimeMillis());
-
-                                    handler.postDelayed(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            startActivity(launchIntent);
-                                            Log.d(TAG, "成功返回应用 - 方法2");
-
-                                            // 延长完成任务的时间
-                                            handler.postDelayed(new Runnable() {
-                                                @Override
-                                                public void run() {
-                                                    finishTask(type, true);
-                                                }
-                                            }, 2000);
-                                        }
-                                    }, 500);
-                                } else {
-                                    Log.e(TAG, "获取应用启动Intent失败");
-                                    finishTask(type, false);
-                                }
-                            } catch (Exception e2) {
-                                Log.e(TAG, "返回应用方法2也失败", e2);
-                                finishTask(type, false);
-                            }
-                        }
-                    }
-                }, RETURN_TO_APP_DELAY);
-            } catch (Exception e) {
-                Log.e(TAG, "启动钉钉失败", e);
-                showNotification("操作失败", "启动钉钉失败: " + e.getMessage());
-                finishTask(type, false);
+        launchStart = launchTiming.beginLaunch(System.currentTimeMillis());
+        readyMillis = -1;
+        try {
+            Log.d(TAG, "启动钉钉应用");
+            launchDingTalk(target);
+        } catch (Exception e) {
+            Log.e(TAG, "启动钉钉失败", e);
+            failRun("启动钉钉失败: " + e.getMessage());
+            return;
+        }
+
+        // 更新通知
+        showNotification("打卡中", "正在执行" + type + "打卡，等待钉钉完成后返回");
+
+        // 事件驱动模式下等待钉钉进入前台并空闲后返回，等待时间仅作为超时上限。
+        // 等待时间为本机钉钉启动耗时的估计加上最短停留时间；操作脚本的耗时不在估计范围内，仍使用固定上限
+        currentRun.moveTo(ClockRunState.WAITING_FOREGROUND);
+        eventDrivenWait = isEventDrivenReturnEnabled();
+        scriptRunner = createScriptRunner();
+        long waitMillis = scriptRunner != null ? RETURN_TO_APP_DELAY
+                : launchTiming.getWaitMillis(launchStart, DINGTALK_MIN_STAY_DELAY, RETURN_TO_APP_DELAY);
+        Log.d(TAG, "等待钉钉最长" + waitMillis + "ms，" + launchStart + "，" + launchTiming.describe());
+        handler.postDelayed(waitTimeoutRunnable, waitMillis);
+    }
+
+    private static boolean isWaitingForDingTalk(ClockRunState state) {
+        return state == ClockRunState.WAITING_FOREGROUND || state == ClockRunState.VERIFYING;
+    }
+
+    private void advanceRun() {
+        if (currentRun == null) {
+            return;
+        }
+
+        switch (currentRun.getState()) {
+            case VERIFYING:
+                Log.d(TAG, "钉钉已在前台且空闲，耗时"
+                        + currentRun.getNanosSince(ClockRunState.WAITING_FOREGROUND) / 1000000 + "ms");
+                verifyPunchResult();
+                enterReturning();
+                break;
+            case RETURNING:
+                performReturn();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void enterReturning() {
+        handler.removeCallbacks(waitTimeoutRunnable);
+        handler.removeCallbacks(stepRunnable);
+        recordLaunchTiming();
+        cancelScript();
+        currentRun.moveTo(ClockRunState.RETURNING);
+
+        // 全局操作不需要等待，启动Activity前先等500ms
+        returnStrategy = SettingsStore.getInstance(this).get().returnStrategy;
+        handler.postDelayed(stepRunnable, returnStrategy.startsActivity() ? RETURN_SETTLE_DELAY : 0);
+    }
+
+    /**
+     * 记录本次从启动钉钉到钉钉窗口出现在前台的耗时。超时前钉钉一直没有出现时按已等待的时间记录，
+     * 估计值随之变大，下次会等得更久。执行操作脚本的任务不记录。
+     */
+    private void recordLaunchTiming() {
+        if (scriptRunner != null || launchStart == null) {
+            return;
+        }
+        long millis = readyMillis >= 0 ? readyMillis : currentRun.getNanosSince(ClockRunState.LAUNCHING) / 1000000;
+        launchTiming.record(launchStart, millis);
+        Log.d(TAG, "钉钉" + launchStart + "启动耗时" + millis + "ms，" + launchTiming.describe());
+        launchStart = null;
+    }
+
+    private void performReturn() {
+        Log.d(TAG, "离开钉钉，方式: " + returnStrategy.label);
+        boolean started;
+        try {
+            switch (returnStrategy) {
+                case HOME:
+                    started = performGlobalAction(GLOBAL_ACTION_HOME);
+                    break;
+                case BACK:
+                    started = performGlobalAction(GLOBAL_ACTION_BACK);
+                    break;
+                case RESULT_ACTIVITY:
+                    started = showResultActivity();
+                    break;
+                case BRING_TO_FRONT:
+                    started = bringAppToFront();
+                    break;
+                default:
+                    started = relaunchApp();
+                    break;
             }
+        } catch (Exception e) {
+            Log.e(TAG, returnStrategy.label + "失败", e);
+            started = false;
+        }
+        if (!started) {
+            failRun(returnStrategy.label + "失败");
+            return;
+        }
+
+        // COOLDOWN阶段的耗时即为返回耗时，钉钉离开前台后立即结束任务
+        currentRun.moveTo(ClockRunState.COOLDOWN);
+        handler.post(returnCheckRunnable);
+    }
+
+    private void checkReturned() {
+        if (currentRun == null || currentRun.getState() != ClockRunState.COOLDOWN) {
+            return;
+        }
+        long elapsed = currentRun.getNanosSince(ClockRunState.COOLDOWN) / 1000000;
+        CharSequence foreground = getForegroundPackage();
+        if (foreground != null && !DINGTALK_PACKAGE_NAME.contentEquals(foreground)) {
+            Log.d(TAG, returnStrategy.label + "返回耗时" + elapsed + "ms，前台: " + foreground);
+            currentRun.moveTo(ClockRunState.DONE);
+            finishTask(currentRun.getType(), null);
+        } else if (elapsed >= RETURN_TIMEOUT) {
+            String reason = foreground == null
+                    ? returnStrategy.label + "后无法确认是否已离开钉钉"
+                    : returnStrategy.label + "后钉钉仍在前台";
+            Log.w(TAG, reason + "，已等待" + elapsed + "ms");
+            failRun(reason);
         } else {
-            // 钉钉未安装
-            Log.e(TAG, "钉钉应用未安装");
-            showNotification("操作失败", "未安装钉钉应用，请先安装");
+            handler.postDelayed(returnCheckRunnable, RETURN_POLL_INTERVAL);
+        }
+    }
+
+    /**
+     * 当前活动窗口所属的包名。窗口切换过程中拿不到活动窗口，此时返回null，表示无法判断。
+     */
+    private CharSequence getForegroundPackage() {
+        AccessibilityNodeInfo root = getRootInActiveWindow();
+        if (root == null) {
+            return null;
+        }
+        try {
+            return root.getPackageName();
+        } finally {
+            root.recycle();
+        }
+    }
+
+    /**
+     * 显示打卡结果页。结果页放在桌面之上的单独任务中，关闭后回到桌面而不是钉钉。
+     */
+    private boolean showResultActivity() {
+        Intent intent = new Intent(this, PunchResultActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_TASK_ON_HOME);
+        intent.putExtra(PunchResultActivity.EXTRA_MESSAGE, describeResult());
+        startActivity(intent);
+        return true;
+    }
+
+    /**
+     * 把本应用已有的任务移到前台，MainActivity不会重新创建；没有任务时启动一个新的。
+     */
+    private boolean bringAppToFront() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            ActivityManager activityManager = (ActivityManager) getSystemService(Context.ACTIVITY_SERVICE);
+            List<ActivityManager.AppTask> tasks = activityManager.getAppTasks();
+            for (ActivityManager.AppTask task : tasks) {
+                Intent baseIntent = task.getTaskInfo().baseIntent;
+                if (baseIntent.getComponent() != null
+                        && MainActivity.class.getName().equals(baseIntent.getComponent().getClassName())) {
+                    task.moveToFront();
+                    return true;
+                }
+            }
+        }
+        // MainActivity为singleTask，已有实例时只会收到onNewIntent
+        Intent launchIntent = new Intent(this, MainActivity.class);
+        launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_REORDER_TO_FRONT);
+        launchIntent.putExtra("from_service", true);
+        launchIntent.putExtra("timestamp", System.currentTimeMillis());
+        startActivity(launchIntent);
+        return true;
+    }
+
+    private boolean relaunchApp() {
+        Intent launchIntent = new Intent(this, MainActivity.class);
+        try {
+            // 方法1：使用MainActivity的类直接启动
+            startReturnActivity(launchIntent);
+            Log.d(TAG, "成功返回应用 - 方法1");
+            return true;
+        } catch (Exception e1) {
+            Log.e(TAG, "方法1返回应用失败，尝试方法2", e1);
+
+            // 方法2：使用应用启动器启动
+            launchIntent = getPackageManager().getLaunchIntentForPackage(getPackageName());
+            if (launchIntent == null) {
+                Log.e(TAG, "获取应用启动Intent失败");
+                return false;
+            }
             try {
-                Toast.makeText(this, "未安装钉钉应用，请先安装", Toast.LENGTH_LONG).show();
-            } catch (Exception e) {
-                Log.e(TAG, "显示Toast失败", e);
+                startReturnActivity(launchIntent);
+                Log.d(TAG, "成功返回应用 - 方法2");
+                return true;
+            } catch (Exception e2) {
+                Log.e(TAG, "返回应用方法2也失败", e2);
+                return false;
+            }
+        }
+    }
+
+    private void startReturnActivity(Intent launchIntent) {
+        launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK |
+                Intent.FLAG_ACTIVITY_SINGLE_TOP |
+                Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        launchIntent.putExtra("from_service", true);
+        launchIntent.putExtra("timestamp", System.currentTimeMillis()); // 添加时间戳避免intent被系统视为重复
+        startActivity(launchIntent);
+    }
+
+    private void failRun(String reason) {
+        handler.removeCallbacks(waitTimeoutRunnable);
+        handler.removeCallbacks(stepRunnable);
+        handler.removeCallbacks(returnCheckRunnable);
+        cancelScript();
+        currentRun.fail(reason);
+        finishTask(currentRun.getType(), reason);
+    }
+
+    private void setEventDeliveryEnabled(boolean enabled) {
+        eventFilter.setActive(enabled);
+        try {
+            AccessibilityServiceInfo info = getServiceInfo();
+            if (info != null) {
+                info.eventTypes = enabled ? eventFilter.getDeclaredMask() : 0;
+                setServiceInfo(info);
             }
+        } catch (Exception e) {
+            Log.e(TAG, "更新事件订阅失败", e);
+        }
 
-            finishTask(type, false);
+        if (!enabled) {
+            Log.d(TAG, "事件过滤统计 - 接受: " + eventFilter.getAcceptedCount()
+                    + ", 丢弃: " + eventFilter.getDroppedCount());
         }
     }
 
-    private void finishTask(final String type, boolean success) {
+    private GestureScriptRunner createScriptRunner() {
         try {
-            // 显示通知
-            String notificationText = success
-                    ? type + "打卡已完成并返回应用"
-                    : type + "打卡已完成但返回应用失败";
+            List<GestureStep> steps = GestureStep.parseLines(SettingsStore.getInstance(this).get().gestureScript);
+            return steps.isEmpty() ? null : new GestureScriptRunner(this, handler, steps);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "操作脚本格式错误，已忽略", e);
+            return null;
+        }
+    }
 
-            showNotification("打卡完成", notificationText);
+    private void cancelScript() {
+        if (scriptRunner != null) {
+            scriptRunner.cancel();
+            scriptRunner = null;
+        }
+    }
 
-            // 显示Toast
-            try {
-                String toastText = success
-                        ? type + "打卡已完成"
-                        : type + "打卡已完成但返回应用失败";
+    /**
+     * 在钉钉窗口中查找打卡结果，找不到或窗口不是钉钉时为UNKNOWN。
+     */
+    private void verifyPunchResult() {
+        if (currentRun == null || currentRun.getVerification() != PunchVerification.UNKNOWN) {
+            return;
+        }
+        try {
+            currentRun.setVerification(verifier.verify(getRootInActiveWindow()));
+        } catch (Exception e) {
+            Log.e(TAG, "核对打卡结果失败", e);
+        }
+    }
 
-                Toast.makeText(DingDingAccessibilityService.this,
-                        toastText, Toast.LENGTH_SHORT).show();
-            } catch (Exception e) {
-                Log.e(TAG, "显示Toast失败", e);
+    /**
+     * 结果页上显示的打卡结果，例如 "上班打卡已完成，钉钉显示打卡成功"
+     */
+    private String describeResult() {
+        String text = currentRun.getType() + "打卡已完成";
+        if (currentRun.getVerification() == PunchVerification.VERIFIED) {
+            return text + "，钉钉显示打卡成功";
+        } else if (currentRun.getVerification() == PunchVerification.FAILED) {
+            return text + "，但钉钉显示打卡失败，请手动检查";
+        }
+        return text + "，未能确认打卡结果";
+    }
+
+    private boolean isEventDrivenReturnEnabled() {
+        return SettingsStore.getInstance(this).get().eventDrivenReturn;
+    }
+
+    /**
+     * 结束当前任务，failureReason为null表示成功。结果通知立即发出，不与之前的进度通知合并。
+     */
+    private void finishTask(final String type, String failureReason) {
+        try {
+            // 没有进入RETURNING的任务没有在钉钉中停留，不能说打卡已完成
+            boolean punched = currentRun != null && currentRun.hasReached(ClockRunState.RETURNING);
+            if (failureReason != null && !punched) {
+                notifications.postNow("打卡失败", type + "打卡未完成: " + failureReason,
+                        type + "打卡未完成: " + failureReason, Toast.LENGTH_LONG);
+                return;
             }
+
+            String notificationText = failureReason == null
+                    ? type + "打卡已完成并离开钉钉"
+                    : type + "打卡已完成但离开钉钉失败: " + failureReason;
+
+            String toastText = failureReason == null
+                    ? type + "打卡已完成"
+                    : type + "打卡已完成但离开钉钉失败";
+
+            // 附上在钉钉界面上核对到的结果
+            PunchVerification verification = currentRun != null
+                    ? currentRun.getVerification() : PunchVerification.UNKNOWN;
+            if (verification == PunchVerification.VERIFIED) {
+                notificationText += "，钉钉显示打卡成功";
+                toastText += "，钉钉显示打卡成功";
+            } else if (verification == PunchVerification.FAILED) {
+                notificationText += "，但钉钉显示打卡失败，请手动检查";
+                toastText += "，但钉钉显示打卡失败";
+            } else {
+                notificationText += "，未能确认打卡结果";
+            }
+
+            notifications.postNow("打卡完成", notificationText, toastText, Toast.LENGTH_SHORT);
         } catch (Exception e) {
             Log.e(TAG, "完成任务时发生异常", e);
         } finally {
-            // 延迟释放资源
-            handler.postDelayed(new Runnable() {
+            if (currentRun != null) {
+                Log.d(TAG, type + "打卡任务结束，状态: " + currentRun.getState()
+                        + "，核对结果: " + currentRun.getVerification()
+                        + "，耗时明细: " + currentRun.describeLatencies());
+                if (journal != null) {
+                    journal.append(currentRun);
+                }
+                forgetPendingRun(currentRun.getRunId());
+                currentRun = null;
+            }
+
+            // 任务已结束，立即释放唤醒锁
+            leaseManager.release(currentRunId);
+            Log.d(TAG, "今日唤醒锁累计持有" + leaseManager.getHeldMillisToday() + "ms");
+            currentRunId = ClockRunIds.NO_RUN;
+
+            mainLooperProbe.stop();
+            Log.d(TAG, "打卡期间主线程调度延迟: " + mainLooperProbe.describe());
+
+            // 立即执行排队中的下一个请求
+            requestQueue.complete();
+            Log.d(TAG, "打卡队列统计: " + requestQueue.describeMetrics());
+            handler.post(new Runnable() {
                 @Override
                 public void run() {
-                    try {
-                        if (wakeLock != null && wakeLock.isHeld()) {
-                            wakeLock.release();
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "释放唤醒锁失败", e);
-                    }
-
-                    isProcessing = false;
+                    runNextRequest();
                 }
-            }, 3000); // 延迟3秒释放
+            });
         }
     }
 
-    private void launchDingTalk() {
+    private void launchDingTalk(TargetAppResolver.Resolution target) {
         try {
-            Intent launchIntent = getPackageManager().getLaunchIntentForPackage(DINGTALK_PACKAGE_NAME);
+            Intent launchIntent = target.createLaunchIntent();
             if (launchIntent != null) {
-                launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
                 startActivity(launchIntent);
                 Log.d(TAG, "钉钉应用已启动");
             } else {
                 Log.e(TAG, "获取钉钉启动Intent失败");
             }
+        } catch (ActivityNotFoundException e) {
+            // 缓存的启动Activity已失效（例如钉钉刚升级），重新解析后再试一次
+            Log.w(TAG, "缓存的钉钉启动Activity已失效，重新解析", e);
+            targetApp.invalidate();
+            Intent launchIntent = targetApp.get().createLaunchIntent();
+            if (launchIntent == null) {
+                throw e;
+            }
+            startActivity(launchIntent);
+            Log.d(TAG, "钉钉应用已启动");
         } catch (Exception e) {
             Log.e(TAG, "启动钉钉时发生异常", e);
             throw e; // 重新抛出异常以便上层处理
         }
     }
 
-    private boolean isAppInstalled(String packageName) {
-        try {
-            getPackageManager().getPackageInfo(packageName, PackageManager.GET_ACTIVITIES);
-            return true;
-        } catch (PackageManager.NameNotFoundException e) {
-            return false;
-        }
-    }
-
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             try {
@@ -425,28 +967,6 @@ public class DingDingAccessibilityService extends AccessibilityService {
     }
 
     private void showNotification(String title, String text) {
-        try {
-            if (notificationManager == null) {
-                Log.e(TAG, "通知管理器为空");
-                return;
-            }
-
-            Intent notificationIntent = new Intent(this, MainActivity.class);
-            notificationIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
-            PendingIntent pendingIntent = PendingIntent.getActivity(
-                    this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
-
-            NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
-                    .setContentTitle(title)
-                    .setContentText(text)
-                    .setSmallIcon(R.drawable.ic_launcher_foreground) // 确保有此图标资源
-                    .setContentIntent(pendingIntent)
-                    .setPriority(NotificationCompat.PRIORITY_DEFAULT);
-
-            Notification notification = builder.build();
-            notificationManager.notify(NOTIFICATION_ID, notification);
-        } catch (Exception e) {
-            Log.e(TAG, "显示通知失败", e);
-        }
+        notifications.post(title, text);
     }
 }
\ No newline at end of file
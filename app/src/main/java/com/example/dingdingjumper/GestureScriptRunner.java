@@ -0,0 +1,296 @@
+package com.example.dingdingjumper;
+
+import android.accessibilityservice.AccessibilityService;
+import android.accessibilityservice.GestureDescription;
+import android.annotation.TargetApi;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 执行操作脚本。相邻的点击和滑动步骤合并成一个GestureDescription，一次dispatchGesture完成；
+ * 每一步由上一步的完成回调或无障碍事件推进，不使用固定等待，定时器只作为超时上限。
+ * 只在构造时传入的handler所在线程使用，事件需要由无障碍服务通过onAccessibilityEvent()转发进来。
+ */
+final class GestureScriptRunner {
+
+    private static final String TAG = "GestureScriptRunner";
+
+    // 同一个手势中相邻笔画之间留出间隔，避免被当成多指操作
+    private static final long STROKE_GAP_MS = 60;
+    private static final int MAX_STROKES_PER_GESTURE = 10;
+
+    interface Callback {
+        void onScriptFinished(boolean success, String message);
+    }
+
+    private enum Waiting {
+        NONE,
+        GESTURE,
+        FIND,
+        WINDOW,
+        CONTENT
+    }
+
+    private final AccessibilityService service;
+    private final Handler handler;
+    // 编译后的执行单元：手势批次包含一到多个笔画，其他单元只有一步
+    private final List<GestureStep[]> units = new ArrayList<>();
+
+    private Callback callback;
+    private int index;
+    private Waiting waiting = Waiting.NONE;
+    private boolean running;
+    private long startedAt;
+
+    private final Runnable timeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!running) {
+                return;
+            }
+            GestureStep step = units.get(index)[0];
+            if (waiting == Waiting.WINDOW || waiting == Waiting.CONTENT) {
+                // 等待事件只是上限，超时后继续下一步
+                Log.d(TAG, "等待超时，继续执行: " + step);
+                next();
+            } else {
+                finish(false, "步骤超时: " + step);
+            }
+        }
+    };
+
+    GestureScriptRunner(AccessibilityService service, Handler handler, List<GestureStep> steps) {
+        this.service = service;
+        this.handler = handler;
+        compile(steps);
+    }
+
+    private void compile(List<GestureStep> steps) {
+        List<GestureStep> batch = new ArrayList<>();
+        for (GestureStep step : steps) {
+            if (step.isStroke()) {
+                batch.add(step);
+                if (batch.size() == MAX_STROKES_PER_GESTURE) {
+                    units.add(batch.toArray(new GestureStep[0]));
+                    batch.clear();
+                }
+                continue;
+            }
+            if (!batch.isEmpty()) {
+                units.add(batch.toArray(new GestureStep[0]));
+                batch.clear();
+            }
+            units.add(new GestureStep[]{step});
+        }
+        if (!batch.isEmpty()) {
+            units.add(batch.toArray(new GestureStep[0]));
+        }
+    }
+
+    boolean isEmpty() {
+        return units.isEmpty();
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    void start(Callback callback) {
+        this.callback = callback;
+        index = 0;
+        running = true;
+        startedAt = SystemClock.elapsedRealtime();
+        Log.d(TAG, "开始执行操作脚本，共" + units.size() + "个执行单元");
+        runCurrent();
+    }
+
+    void cancel() {
+        if (running) {
+            running = false;
+            waiting = Waiting.NONE;
+            handler.removeCallbacks(timeoutRunnable);
+            Log.d(TAG, "操作脚本已取消，执行到第" + (index + 1) + "个单元");
+        }
+    }
+
+    /**
+     * 由无障碍服务转发事件，推进正在等待界面变化的步骤。
+     */
+    void onAccessibilityEvent(int eventType) {
+        if (!running) {
+            return;
+        }
+        switch (waiting) {
+            case FIND:
+                // 界面有变化，重新查找控件
+                tryClick(units.get(index)[0]);
+                break;
+            case WINDOW:
+                if (eventType == AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+                    next();
+                }
+                break;
+            case CONTENT:
+                next();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void runCurrent() {
+        if (!running) {
+            return;
+        }
+        if (index >= units.size()) {
+            finish(true, "操作脚本执行完成");
+            return;
+        }
+
+        GestureStep[] unit = units.get(index);
+        GestureStep step = unit[0];
+        if (step.isStroke()) {
+            dispatch(unit);
+        } else if (step.isWait()) {
+            waiting = step.kind == GestureStep.Kind.WAIT_WINDOW ? Waiting.WINDOW : Waiting.CONTENT;
+            handler.postDelayed(timeoutRunnable, step.durationMs);
+        } else {
+            handler.postDelayed(timeoutRunnable, step.durationMs);
+            tryClick(step);
+        }
+    }
+
+    private void next() {
+        handler.removeCallbacks(timeoutRunnable);
+        waiting = Waiting.NONE;
+        index++;
+        runCurrent();
+    }
+
+    private void finish(boolean success, String message) {
+        handler.removeCallbacks(timeoutRunnable);
+        running = false;
+        waiting = Waiting.NONE;
+        Log.d(TAG, message + "，耗时" + (SystemClock.elapsedRealtime() - startedAt) + "ms");
+        if (callback != null) {
+            callback.onScriptFinished(success, message);
+        }
+    }
+
+    /**
+     * 查找控件并点击。控件本身不可点击时点击最近的可点击父控件，都不可点击时在控件中心点击。
+     * 找不到时等待下一次界面变化再试。
+     */
+    private void tryClick(GestureStep step) {
+        AccessibilityNodeInfo root = service.getRootInActiveWindow();
+        if (root == null) {
+            waiting = Waiting.FIND;
+            return;
+        }
+
+        List<AccessibilityNodeInfo> nodes = step.kind == GestureStep.Kind.CLICK_TEXT
+                ? root.findAccessibilityNodeInfosByText(step.target)
+                : root.findAccessibilityNodeInfosByViewId(step.target);
+        root.recycle();
+        if (nodes == null || nodes.isEmpty()) {
+            waiting = Waiting.FIND;
+            return;
+        }
+
+        AccessibilityNodeInfo node = nodes.get(0);
+        for (int i = 1; i < nodes.size(); i++) {
+            nodes.get(i).recycle();
+        }
+
+        Rect bounds = new Rect();
+        node.getBoundsInScreen(bounds);
+        boolean clicked = false;
+        AccessibilityNodeInfo current = node;
+        while (current != null && !clicked) {
+            if (current.isClickable()) {
+                clicked = current.performAction(AccessibilityNodeInfo.ACTION_CLICK);
+            }
+            AccessibilityNodeInfo parent = clicked ? null : current.getParent();
+            current.recycle();
+            current = parent;
+        }
+
+        if (clicked) {
+            Log.d(TAG, "已点击: " + step);
+            next();
+        } else if (!bounds.isEmpty()) {
+            // 没有可点击的控件，直接在控件中心点击
+            handler.removeCallbacks(timeoutRunnable);
+            DisplayMetrics metrics = service.getResources().getDisplayMetrics();
+            dispatch(new GestureStep[]{GestureStep.tap(
+                    clamp((float) bounds.centerX() / metrics.widthPixels),
+                    clamp((float) bounds.centerY() / metrics.heightPixels))});
+        } else {
+            waiting = Waiting.FIND;
+        }
+    }
+
+    private void dispatch(GestureStep[] strokes) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            finish(false, "系统版本低于Android 7.0，不支持手势");
+            return;
+        }
+        waiting = Waiting.GESTURE;
+        boolean accepted;
+        try {
+            accepted = dispatchGesture(strokes);
+        } catch (Exception e) {
+            Log.e(TAG, "执行手势失败", e);
+            accepted = false;
+        }
+        if (!accepted) {
+            finish(false, "系统拒绝执行手势");
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.N)
+    private boolean dispatchGesture(GestureStep[] strokes) {
+        DisplayMetrics metrics = service.getResources().getDisplayMetrics();
+        GestureDescription.Builder builder = new GestureDescription.Builder();
+        long startTime = 0;
+        for (GestureStep stroke : strokes) {
+            Path path = new Path();
+            path.moveTo(stroke.x1 * metrics.widthPixels, stroke.y1 * metrics.heightPixels);
+            if (stroke.kind == GestureStep.Kind.SWIPE) {
+                path.lineTo(stroke.x2 * metrics.widthPixels, stroke.y2 * metrics.heightPixels);
+            }
+            builder.addStroke(new GestureDescription.StrokeDescription(path, startTime, stroke.durationMs));
+            startTime += stroke.durationMs + STROKE_GAP_MS;
+        }
+
+        return service.dispatchGesture(builder.build(), new AccessibilityService.GestureResultCallback() {
+            @Override
+            public void onCompleted(GestureDescription gestureDescription) {
+                if (running && waiting == Waiting.GESTURE) {
+                    next();
+                }
+            }
+
+            @Override
+            public void onCancelled(GestureDescription gestureDescription) {
+                if (running && waiting == Waiting.GESTURE) {
+                    finish(false, "手势被系统取消");
+                }
+            }
+        }, handler);
+    }
+
+    private static float clamp(float value) {
+        return Math.max(0f, Math.min(1f, value));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.dingdingjumper;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * 钉钉启动耗时估计的持久化。估计保存在单独的SharedPreferences中，每次打卡结束后更新一次，
+ * 服务重启或应用升级后继续使用已积累的数据。
+ */
+final class LaunchTimingStore {
+
+    private static final String TAG = "LaunchTimingStore";
+    private static final String PREF_NAME = "LaunchTiming";
+    private static final String PREF_ESTIMATOR = "estimator";
+
+    // 等待钉钉的时间取本机启动耗时的95分位数，再加上钉钉在前台的停留时间和安全余量
+    static final double WAIT_QUANTILE = 0.95;
+    private static final long WAIT_MARGIN_MILLIS = 1000;
+    private static final long MIN_WAIT_MILLIS = 5000;
+    private static final long MAX_WAIT_MILLIS = 30000;
+
+    private static LaunchTimingStore instance;
+
+    private final SharedPreferences prefs;
+    private final LaunchTimingEstimator estimator;
+
+    static synchronized LaunchTimingStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new LaunchTimingStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LaunchTimingStore(Context context) {
+        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        estimator = load(prefs.getString(PREF_ESTIMATOR, null));
+    }
+
+    private static LaunchTimingEstimator load(String encoded) {
+        if (encoded == null) {
+            return new LaunchTimingEstimator();
+        }
+        try {
+            return LaunchTimingEstimator.decode(encoded);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "读取启动耗时数据失败，重新统计", e);
+            return new LaunchTimingEstimator();
+        }
+    }
+
+    /**
+     * 判断本次启动方式并记下启动时间，在启动钉钉前调用。
+     */
+    synchronized LaunchTimingEstimator.Start beginLaunch(long launchTime) {
+        LaunchTimingEstimator.Start start = estimator.classify(launchTime);
+        estimator.markLaunched(launchTime);
+        return start;
+    }
+
+    /**
+     * 等待钉钉的时间，样本不足时返回defaultMillis。stayMillis为钉钉出现在前台后至少停留的时间。
+     */
+    synchronized long getWaitMillis(LaunchTimingEstimator.Start start, long stayMillis, long defaultMillis) {
+        return estimator.waitMillis(start, WAIT_QUANTILE, stayMillis + WAIT_MARGIN_MILLIS, defaultMillis,
+                MIN_WAIT_MILLIS, MAX_WAIT_MILLIS);
+    }
+
+    synchronized void record(LaunchTimingEstimator.Start start, long readyMillis) {
+        estimator.record(start, readyMillis);
+        prefs.edit().putString(PREF_ESTIMATOR, estimator.encode()).apply();
+    }
+
+    synchronized String describe() {
+        return estimator.describe(WAIT_QUANTILE);
+    }
+}
@@ -2,21 +2,23 @@ package com.example.dingdingjumper;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import android.annotation.SuppressLint;
-import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.app.TimePickerDialog;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewTreeObserver;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.CompoundButton;
+import android.widget.EditText;
 import android.widget.SeekBar;
+import android.widget.Spinner;
 import android.widget.Switch;
 import android.widget.TextView;
 import android.widget.TimePicker;
@@ -26,17 +28,10 @@ import java.util.Calendar;
 
 public class MainActivity extends AppCompatActivity {
 
-    private static final String PREF_NAME = "DingDingJumperPrefs";
-    private static final String PREF_CHECK_IN_HOUR = "checkInHour";
-    private static final String PREF_CHECK_IN_MINUTE = "checkInMinute";
-    private static final String PREF_CHECK_OUT_HOUR = "checkOutHour";
-    private static final String PREF_CHECK_OUT_MINUTE = "checkOutMinute";
-    private static final String PREF_ALARM_ENABLED = "alarmEnabled";
-    private static final String PREF_DELAY_SECONDS = "delaySeconds";
-
     public static final String ACTION_CHECK_IN_ALARM = "com.example.dingdingjumper.CHECK_IN_ALARM";
     public static final String ACTION_CHECK_OUT_ALARM = "com.example.dingdingjumper.CHECK_OUT_ALARM";
     private static final int REQUEST_ACCESSIBILITY = 1000;
+    private static final int REQUEST_IMPORT_CALENDAR = 1001;
 
     private TextView checkInTimeText;
     private TextView checkOutTimeText;
@@ -45,9 +40,18 @@ public class MainActivity extends AppCompatActivity {
     private Switch enableAlarmSwitch;
     private Button testJumpButton;
     private TextView statusTextView;
+    private TextView launchTimingTextView;
+    private TextView startupReportTextView;
     private Button accessibilitySettingsButton;
     private SeekBar delaySeekBar;
     private TextView delayValueText;
+    private EditText extraSlotsEditText;
+    private Button saveSlotsButton;
+    private Switch workdaysOnlySwitch;
+    private EditText gestureScriptEditText;
+    private Button saveGestureScriptButton;
+    private Button importCalendarButton;
+    private Spinner returnStrategySpinner;
 
     private int checkInHour = 9;
     private int checkInMinute = 0;
@@ -56,63 +60,202 @@ public class MainActivity extends AppCompatActivity {
     private boolean alarmEnabled = false;
     private int delaySeconds = 60; // 默认延迟60秒
 
-    private AlarmManager alarmManager;
-    private PendingIntent checkInPendingIntent;
-    private PendingIntent checkOutPendingIntent;
+    private String extraSlots = "";
+    private boolean workdaysOnly = true;
+    private String gestureScript = "";
+    private ReturnStrategy returnStrategy = ReturnStrategy.HOME;
+    // applySettings()恢复控件状态时为true，控件的监听器不保存设置、不登记闹钟
+    private boolean applyingSettings = false;
+
+    private SettingsStore settingsStore;
+    // 首帧之后才初始化，之前为null
+    private AccessibilityStateMonitor accessibilityMonitor;
+
+    private final StartupTracer startup = new StartupTracer("MainActivity", StartupSequence.MAIN_ACTIVITY);
+
+    // 无障碍服务在系统设置中被开启或关闭时立即刷新界面，不依赖onResume
+    private final AccessibilityStateMonitor.Listener accessibilityListener = new AccessibilityStateMonitor.Listener() {
+        @Override
+        public void onServiceEnabledChanged(boolean enabled) {
+            checkAccessibilityServiceEnabled();
+        }
+    };
+
+    // 其他组件修改设置时刷新界面
+    private final SettingsStore.Listener settingsListener = new SettingsStore.Listener() {
+        @Override
+        public void onSettingsChanged(AppSettings oldSettings, final AppSettings newSettings) {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (!newSettings.sameAs(currentSettings())) {
+                        loadSettings();
+                    }
+                }
+            });
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        // 从这里到首帧，主线程上的磁盘和网络访问都计入阻塞调用
+        startup.start();
         super.onCreate(savedInstanceState);
+
+        // 首帧只需要布局和设置；查询无障碍状态推迟到首帧之后，登记闹钟放到工作线程
+        // 各步骤在StartupSequence中登记，首帧前的阻塞调用数由JVM测试检查
+        long start = startup.begin(StartupSequence.SET_CONTENT_VIEW);
         setContentView(R.layout.activity_main);
+        startup.end(StartupSequence.SET_CONTENT_VIEW, start);
 
         // 初始化视图
+        start = startup.begin(StartupSequence.INIT_VIEWS);
         initViews();
+        startup.end(StartupSequence.INIT_VIEWS, start);
 
-        // 加载保存的设置
+        // 加载保存的设置，闹钟在首帧之后登记
+        start = startup.begin(StartupSequence.LOAD_SETTINGS);
+        settingsStore = SettingsStore.getInstance(this);
         loadSettings();
-
-        // 检查是否是从服务跳转回来的
-        if (getIntent().getBooleanExtra("from_service", false)) {
-            Log.d("MainActivity", "从服务跳转回来，时间戳：" + getIntent().getLongExtra("timestamp", 0));
-            // 使用 post 确保界面完全初始化后再执行
-            new Handler().postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    updateStatus(alarmEnabled ? "状态: 定时任务已启用，刚完成一次打卡操作" : "状态: 定时任务已禁用，刚完成一次打卡操作");
-                    // 可以在这里添加一些特殊处理
-                }
-            }, 1000);
-        }
+        settingsStore.addListener(settingsListener);
+        startup.end(StartupSequence.LOAD_SETTINGS, start);
 
         // 更新UI显示
         updateTimeDisplay();
         updateDelayDisplay();
 
-        // 初始化闹钟管理器和PendingIntent
-        alarmManager = (AlarmManager) getSystemService(Context.ALARM_SERVICE);
+        // 检查是否是从服务跳转回来的
+        handleServiceReturn(getIntent());
 
-        Intent checkInIntent = new Intent(ACTION_CHECK_IN_ALARM);
-        checkInPendingIntent = PendingIntent.getBroadcast(
-                this, 1, checkInIntent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        final View decorView = getWindow().getDecorView();
+        decorView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decorView.getViewTreeObserver().removeOnPreDrawListener(this);
+                startup.firstDraw();
+                // 等这一帧绘制完成后再执行其余初始化
+                decorView.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        finishStartup();
+                    }
+                });
+                return true;
+            }
+        });
+    }
 
-        Intent checkOutIntent = new Intent(ACTION_CHECK_OUT_ALARM);
-        checkOutPendingIntent = PendingIntent.getBroadcast(
-                this, 2, checkOutIntent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    private void finishStartup() {
+        if (isDestroyed()) {
+            return;
+        }
+
+        // 检查无障碍服务是否已启用，首次查询需要读取系统设置
+        long start = startup.begin(StartupSequence.ACCESSIBILITY_STATE);
+        accessibilityMonitor = AccessibilityStateMonitor.getInstance(this);
+        accessibilityMonitor.addListener(accessibilityListener);
+        checkAccessibilityServiceEnabled();
+        startup.end(StartupSequence.ACCESSIBILITY_STATE, start);
 
-        // 如果启用了闹钟，设置闹钟
+        // 沿用或重新登记闹钟，在工作线程上完成
         if (alarmEnabled) {
             setAlarms();
         }
 
-        // 检查无障碍服务是否已启用
-        checkAccessibilityServiceEnabled();
+        startup.interactive();
+        startupReportTextView.setText("界面启动: " + startup.getReport().describeSummary());
+    }
+
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        // 服务把已有的任务切回前台时不会重新创建界面
+        setIntent(intent);
+        handleServiceReturn(intent);
+    }
+
+    private void handleServiceReturn(Intent intent) {
+        if (intent.getBooleanExtra("from_service", false)) {
+            Log.d("MainActivity", "从服务跳转回来，时间戳：" + intent.getLongExtra("timestamp", 0));
+            updateStatus(alarmEnabled ? "状态: 定时任务已启用，刚完成一次打卡操作" : "状态: 定时任务已禁用，刚完成一次打卡操作");
+        }
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode != REQUEST_IMPORT_CALENDAR || resultCode != RESULT_OK || data == null) {
+            return;
+        }
+
+        // 读取所选文件并写入应用目录，在工作线程上完成
+        final Context appContext = getApplicationContext();
+        final Uri uri = data.getData();
+        ClockWorker.getInstance().getHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                Exception error = null;
+                try {
+                    WorkdayCalendarStore.getInstance(appContext).importFrom(uri);
+                } catch (Exception e) {
+                    Log.e("MainActivity", "导入节假日数据失败", e);
+                    error = e;
+                }
+                final Exception failure = error;
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isDestroyed()) {
+                            return;
+                        }
+                        if (failure != null) {
+                            Toast.makeText(MainActivity.this, "导入失败: " + failure.getMessage(), Toast.LENGTH_LONG).show();
+                            return;
+                        }
+                        Toast.makeText(MainActivity.this, "节假日数据已导入", Toast.LENGTH_SHORT).show();
+                        if (alarmEnabled) {
+                            setAlarms();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        settingsStore.removeListener(settingsListener);
+        if (accessibilityMonitor != null) {
+            accessibilityMonitor.removeListener(accessibilityListener);
+        }
+        super.onDestroy();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        // 每次回到应用时检查无障碍服务状态
-        checkAccessibilityServiceEnabled();
+        // 每次回到应用时刷新无障碍服务状态，状态本身由AccessibilityStateMonitor缓存；首次启动时由finishStartup()检查
+        if (accessibilityMonitor != null) {
+            checkAccessibilityServiceEnabled();
+        }
+        // 打卡结束后回到应用时显示更新后的钉钉启动耗时
+        refreshLaunchTiming();
+    }
+
+    private void refreshLaunchTiming() {
+        final Context appContext = getApplicationContext();
+        ClockWorker.getInstance().getHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                final String text = "钉钉启动耗时: " + LaunchTimingStore.getInstance(appContext).describe();
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        launchTimingTextView.setText(text);
+                    }
+                });
+            }
+        });
     }
 
     private void initViews() {
@@ -123,9 +266,18 @@ public class MainActivity extends AppCompatActivity {
         enableAlarmSwitch = findViewById(R.id.enableAlarmSwitch);
         testJumpButton = findViewById(R.id.testJumpButton);
         statusTextView = findViewById(R.id.statusTextView);
+        launchTimingTextView = findViewById(R.id.launchTimingTextView);
+        startupReportTextView = findViewById(R.id.startupReportTextView);
         accessibilitySettingsButton = findViewById(R.id.accessibilitySettingsButton);
         delaySeekBar = findViewById(R.id.delaySeekBar);
         delayValueText = findViewById(R.id.delayValueText);
+        extraSlotsEditText = findViewById(R.id.extraSlotsEditText);
+        saveSlotsButton = findViewById(R.id.saveSlotsButton);
+        workdaysOnlySwitch = findViewById(R.id.workdaysOnlySwitch);
+        gestureScriptEditText = findViewById(R.id.gestureScriptEditText);
+        saveGestureScriptButton = findViewById(R.id.saveGestureScriptButton);
+        importCalendarButton = findViewById(R.id.importCalendarButton);
+        returnStrategySpinner = findViewById(R.id.returnStrategySpinner);
 
         // 设置上班时间按钮点击事件
         setCheckInTimeButton.setOnClickListener(new View.OnClickListener() {
@@ -147,6 +299,9 @@ public class MainActivity extends AppCompatActivity {
         enableAlarmSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
             @Override
             public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                if (applyingSettings) {
+                    return;
+                }
                 if (isChecked && !isAccessibilityServiceEnabled()) {
                     Toast.makeText(MainActivity.this, "请先启用无障碍服务", Toast.LENGTH_LONG).show();
                     enableAlarmSwitch.setChecked(false);
@@ -183,13 +338,105 @@ public class MainActivity extends AppCompatActivity {
             public void onStopTrackingTouch(SeekBar seekBar) {
                 saveSettings();
 
-                // 如果闹钟已启用，提示用户设置已更新
+                // 随机延迟已计入闹钟时间，如果闹钟已启用，重新设置闹钟
                 if (alarmEnabled) {
-                    Toast.makeText(MainActivity.this, "延迟设置已更新", Toast.LENGTH_SHORT).show();
+                    setAlarms();
                 }
             }
         });
 
+        // 保存额外打卡时段
+        saveSlotsButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                String text = extraSlotsEditText.getText().toString();
+                try {
+                    ScheduleSlot.parseLines(text);
+                } catch (IllegalArgumentException e) {
+                    Toast.makeText(MainActivity.this, e.getMessage(), Toast.LENGTH_LONG).show();
+                    return;
+                }
+
+                extraSlots = text;
+                saveSettings();
+                if (alarmEnabled) {
+                    setAlarms();
+                } else {
+                    Toast.makeText(MainActivity.this, "打卡时段已保存", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+
+        // 保存钉钉操作脚本
+        saveGestureScriptButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                String text = gestureScriptEditText.getText().toString();
+                try {
+                    GestureStep.parseLines(text);
+                } catch (IllegalArgumentException e) {
+                    Toast.makeText(MainActivity.this, e.getMessage(), Toast.LENGTH_LONG).show();
+                    return;
+                }
+
+                gestureScript = text;
+                saveSettings();
+                Toast.makeText(MainActivity.this, "操作脚本已保存", Toast.LENGTH_SHORT).show();
+            }
+        });
+
+        // 打卡后离开钉钉的方式
+        ReturnStrategy[] strategies = ReturnStrategy.values();
+        String[] labels = new String[strategies.length];
+        for (int i = 0; i < strategies.length; i++) {
+            labels[i] = strategies[i].label;
+        }
+        ArrayAdapter<String> strategyAdapter = new ArrayAdapter<>(this,
+                android.R.layout.simple_spinner_item, labels);
+        strategyAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        returnStrategySpinner.setAdapter(strategyAdapter);
+        returnStrategySpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                ReturnStrategy selected = ReturnStrategy.values()[position];
+                if (returnStrategy == selected) {
+                    return;
+                }
+                returnStrategy = selected;
+                saveSettings();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+
+        // 仅在法定工作日打卡
+        workdaysOnlySwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                if (workdaysOnly == isChecked) {
+                    return;
+                }
+                workdaysOnly = isChecked;
+                saveSettings();
+                if (alarmEnabled) {
+                    setAlarms();
+                }
+            }
+        });
+
+        // 导入节假日文件
+        importCalendarButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                intent.addCategory(Intent.CATEGORY_OPENABLE);
+                intent.setType("text/plain");
+                startActivityForResult(intent, REQUEST_IMPORT_CALENDAR);
+            }
+        });
+
         // 设置测试跳转按钮点击事件
         testJumpButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -199,12 +446,12 @@ public class MainActivity extends AppCompatActivity {
                     return;
                 }
 
-                // 发送测试打卡广播
-                Intent intent = new Intent(DingDingAccessibilityService.ACTION_PERFORM_CLOCK);
-                intent.putExtra("type", "test");
-                intent.putExtra("delaySeconds", delaySeconds);
-                intent.putExtra("isTest", true); // 添加测试标记
-                sendBroadcast(intent);
+                // 直接把测试打卡指令交给无障碍服务
+                if (!ClockCommandBus.getInstance().dispatch(
+                        ClockCommand.forTest("test", delaySeconds, SystemClock.elapsedRealtimeNanos()))) {
+                    Toast.makeText(MainActivity.this, "无障碍服务未运行，请重新启用", Toast.LENGTH_LONG).show();
+                    return;
+                }
 
                 Toast.makeText(MainActivity.this, "测试打卡指令已发送，将在0-" + delaySeconds + "秒内随机执行", Toast.LENGTH_SHORT).show();
             }
@@ -221,26 +468,8 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private boolean isAccessibilityServiceEnabled() {
-        int accessibilityEnabled = 0;
-        try {
-            accessibilityEnabled = Settings.Secure.getInt(
-                    this.getContentResolver(),
-                    Settings.Secure.ACCESSIBILITY_ENABLED);
-        } catch (Settings.SettingNotFoundException e) {
-            return false;
-        }
-
-        if (accessibilityEnabled == 1) {
-            String servicesValue = Settings.Secure.getString(
-                    getContentResolver(),
-                    Settings.Secure.ENABLED_ACCESSIBILITY_SERVICES);
-
-            if (servicesValue != null) {
-                return servicesValue.contains(getPackageName() + "/" + DingDingAccessibilityService.class.getName());
-            }
-        }
-
-        return false;
+        // 首帧前还没有查询，先按已启用处理，finishStartup()中查询后再更正
+        return accessibilityMonitor == null || accessibilityMonitor.isServiceEnabled();
     }
 
     private void checkAccessibilityServiceEnabled() {
@@ -308,85 +537,108 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void loadSettings() {
-        SharedPreferences prefs = getSharedPreferences(PREF_NAME, MODE_PRIVATE);
-        checkInHour = prefs.getInt(PREF_CHECK_IN_HOUR, 9);
-        checkInMinute = prefs.getInt(PREF_CHECK_IN_MINUTE, 0);
-        checkOutHour = prefs.getInt(PREF_CHECK_OUT_HOUR, 18);
-        checkOutMinute = prefs.getInt(PREF_CHECK_OUT_MINUTE, 0);
-        alarmEnabled = prefs.getBoolean(PREF_ALARM_ENABLED, false);
-        delaySeconds = prefs.getInt(PREF_DELAY_SECONDS, 60); // 加载延迟时间设置
+        applySettings(settingsStore.get());
+        updateStatus(alarmEnabled ? "状态: 定时任务已启用" : "状态: 定时任务已禁用");
+    }
 
+    private void applySettings(AppSettings settings) {
+        checkInHour = settings.checkInHour;
+        checkInMinute = settings.checkInMinute;
+        checkOutHour = settings.checkOutHour;
+        checkOutMinute = settings.checkOutMinute;
+        alarmEnabled = settings.alarmEnabled;
+        delaySeconds = settings.delaySeconds;
+        extraSlots = settings.extraSlots;
+        workdaysOnly = settings.workdaysOnly;
+        gestureScript = settings.gestureScript;
+        returnStrategy = settings.returnStrategy;
+
+        applyingSettings = true;
         delaySeekBar.setProgress(delaySeconds);
+        if (!extraSlots.equals(extraSlotsEditText.getText().toString())) {
+            extraSlotsEditText.setText(extraSlots);
+        }
+        if (!gestureScript.equals(gestureScriptEditText.getText().toString())) {
+            gestureScriptEditText.setText(gestureScript);
+        }
+        workdaysOnlySwitch.setChecked(workdaysOnly);
+        returnStrategySpinner.setSelection(returnStrategy.ordinal());
         enableAlarmSwitch.setChecked(alarmEnabled);
-        updateStatus(alarmEnabled ? "状态: 定时任务已启用" : "状态: 定时任务已禁用");
+        applyingSettings = false;
+        updateTimeDisplay();
+        updateDelayDisplay();
+    }
+
+    private AppSettings currentSettings() {
+        return settingsStore.get().buildUpon()
+                .setCheckInTime(checkInHour, checkInMinute)
+                .setCheckOutTime(checkOutHour, checkOutMinute)
+                .setAlarmEnabled(alarmEnabled)
+                .setDelaySeconds(delaySeconds)
+                .setExtraSlots(extraSlots)
+                .setWorkdaysOnly(workdaysOnly)
+                .setGestureScript(gestureScript)
+                .setReturnStrategy(returnStrategy)
+                .build();
     }
 
     private void saveSettings() {
-        SharedPreferences.Editor editor = getSharedPreferences(PREF_NAME, MODE_PRIVATE).edit();
-        editor.putInt(PREF_CHECK_IN_HOUR, checkInHour);
-        editor.putInt(PREF_CHECK_IN_MINUTE, checkInMinute);
-        editor.putInt(PREF_CHECK_OUT_HOUR, checkOutHour);
-        editor.putInt(PREF_CHECK_OUT_MINUTE, checkOutMinute);
-        editor.putBoolean(PREF_ALARM_ENABLED, alarmEnabled);
-        editor.putInt(PREF_DELAY_SECONDS, delaySeconds); // 保存延迟时间设置
-        editor.apply();
+        settingsStore.update(currentSettings());
     }
 
-    @SuppressLint("ScheduleExactAlarm")
+    /**
+     * 在工作线程上登记闹钟，计算下一次打卡、读取节假日数据和调用AlarmManager都不占用主线程。
+     */
     private void setAlarms() {
-        // 取消之前的闹钟
-        cancelAlarms();
-
-        // 设置今天的上班时间
-        Calendar checkInCalendar = Calendar.getInstance();
-        checkInCalendar.set(Calendar.HOUR_OF_DAY, checkInHour);
-        checkInCalendar.set(Calendar.MINUTE, checkInMinute);
-        checkInCalendar.set(Calendar.SECOND, 0);
-
-        // 如果当前时间已经过了今天的上班时间，设置为明天
-        if (checkInCalendar.getTimeInMillis() < System.currentTimeMillis()) {
-            checkInCalendar.add(Calendar.DAY_OF_MONTH, 1);
-        }
-
-        // 设置今天的下班时间
-        Calendar checkOutCalendar = Calendar.getInstance();
-        checkOutCalendar.set(Calendar.HOUR_OF_DAY, checkOutHour);
-        checkOutCalendar.set(Calendar.MINUTE, checkOutMinute);
-        checkOutCalendar.set(Calendar.SECOND, 0);
+        final Context appContext = getApplicationContext();
+        ClockWorker.getInstance().getHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                AlarmScheduler scheduler = AlarmScheduler.getInstance(appContext);
+                final ArmedAlarm previous = scheduler.getArmedAlarm();
+                final ArmedAlarm alarm = scheduler.rearm();
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!isDestroyed()) {
+                            showArmedAlarm(previous, alarm);
+                        }
+                    }
+                });
+            }
+        });
+    }
 
-        // 如果当前时间已经过了今天的下班时间，设置为明天
-        if (checkOutCalendar.getTimeInMillis() < System.currentTimeMillis()) {
-            checkOutCalendar.add(Calendar.DAY_OF_MONTH, 1);
+    private void showArmedAlarm(ArmedAlarm previous, ArmedAlarm alarm) {
+        // 更新状态
+        if (alarm == null) {
+            updateStatus("状态: 定时任务已启用，但没有可执行的打卡时段");
+            return;
         }
+        updateStatus("状态: 已设置 - 下次" + alarm.type + "打卡: " + formatTime(alarm.getFireTime())
+                + "（含随机延迟" + alarm.jitterSeconds + "秒）");
 
-        // 设置重复的闹钟
-        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.M) {
-            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP,
-                    checkInCalendar.getTimeInMillis(), checkInPendingIntent);
-            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP,
-                    checkOutCalendar.getTimeInMillis(), checkOutPendingIntent);
-        } else {
-            alarmManager.setExact(AlarmManager.RTC_WAKEUP,
-                    checkInCalendar.getTimeInMillis(), checkInPendingIntent);
-            alarmManager.setExact(AlarmManager.RTC_WAKEUP,
-                    checkOutCalendar.getTimeInMillis(), checkOutPendingIntent);
+        // 闹钟没有变化时（例如打开应用、打卡后跳转回来）不再提示
+        if (!alarm.sameAs(previous)) {
+            Toast.makeText(this, "定时任务已设置，将在设定时间后随机延迟0-" + delaySeconds + "秒内执行", Toast.LENGTH_SHORT).show();
         }
-
-        // 更新状态
-        String nextCheckIn = String.format("%02d:%02d", checkInCalendar.get(Calendar.HOUR_OF_DAY),
-                checkInCalendar.get(Calendar.MINUTE));
-        String nextCheckOut = String.format("%02d:%02d", checkOutCalendar.get(Calendar.HOUR_OF_DAY),
-                checkOutCalendar.get(Calendar.MINUTE));
-
-        updateStatus("状态: 已设置 - 下次上班打卡: " + nextCheckIn + ", 下次下班打卡: " + nextCheckOut);
-
-        Toast.makeText(this, "定时任务已设置，将在设定时间后随机延迟0-" + delaySeconds + "秒内执行", Toast.LENGTH_SHORT).show();
     }
 
     private void cancelAlarms() {
-        if (alarmManager != null) {
-            alarmManager.cancel(checkInPendingIntent);
-            alarmManager.cancel(checkOutPendingIntent);
-        }
+        final Context appContext = getApplicationContext();
+        ClockWorker.getInstance().getHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                AlarmScheduler.getInstance(appContext).cancel();
+            }
+        });
+    }
+
+    private static String formatTime(long timeMillis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(timeMillis);
+        return String.format("%d月%d日 %02d:%02d:%02d", calendar.get(Calendar.MONTH) + 1,
+                calendar.get(Calendar.DAY_OF_MONTH), calendar.get(Calendar.HOUR_OF_DAY),
+                calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND));
     }
 }
\ No newline at end of file
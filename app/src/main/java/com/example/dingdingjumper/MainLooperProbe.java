@@ -0,0 +1,81 @@
+package com.example.dingdingjumper;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * 主线程调度延迟探针。在工作线程上定时向主线程投递一个空任务，
+ * 记录从投递到执行经过的时间，反映打卡期间主线程有多忙。
+ */
+final class MainLooperProbe {
+
+    private static final long INTERVAL_MS = 100;
+
+    private final Handler workerHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile boolean running;
+    private int sampleCount;
+    private long totalLagNanos;
+    private long maxLagNanos;
+
+    private final Runnable sampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!running) {
+                return;
+            }
+            final long postedAt = SystemClock.elapsedRealtimeNanos();
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    record(SystemClock.elapsedRealtimeNanos() - postedAt);
+                }
+            });
+            workerHandler.postDelayed(this, INTERVAL_MS);
+        }
+    };
+
+    MainLooperProbe(Handler workerHandler) {
+        this.workerHandler = workerHandler;
+    }
+
+    /**
+     * 开始采样，之前的统计清零。在工作线程调用。
+     */
+    void start() {
+        synchronized (this) {
+            sampleCount = 0;
+            totalLagNanos = 0;
+            maxLagNanos = 0;
+        }
+        running = true;
+        workerHandler.removeCallbacks(sampleRunnable);
+        workerHandler.post(sampleRunnable);
+    }
+
+    void stop() {
+        running = false;
+        workerHandler.removeCallbacks(sampleRunnable);
+    }
+
+    synchronized long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    synchronized long getAverageLagNanos() {
+        return sampleCount == 0 ? 0 : totalLagNanos / sampleCount;
+    }
+
+    synchronized String describe() {
+        return "采样" + sampleCount + "次，平均" + getAverageLagNanos() / 1000 + "us，最大"
+                + maxLagNanos / 1000 + "us";
+    }
+
+    private synchronized void record(long lagNanos) {
+        sampleCount++;
+        totalLagNanos += lagNanos;
+        maxLagNanos = Math.max(maxLagNanos, lagNanos);
+    }
+}
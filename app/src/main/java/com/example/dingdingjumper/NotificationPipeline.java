@@ -0,0 +1,216 @@
+package com.example.dingdingjumper;
+
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.core.app.NotificationCompat;
+
+import java.util.ArrayDeque;
+
+/**
+ * 服务的通知和Toast反馈通道。
+ * 复用同一个Builder和PendingIntent，短时间内的多次更新合并为一次notify，
+ * 并按系统允许的频率限流（系统对每个应用约每秒5次，超出的更新会被静默丢弃）。
+ * 失败和任务结束等结果消息用postNow()按顺序排队，不参与合并，在限流允许的最早时间逐条发出，
+ * 之后到达的进度更新排在它们后面。
+ * 所有方法都需要在handler所在线程调用。
+ */
+final class NotificationPipeline {
+
+    private static final String TAG = "NotificationPipeline";
+
+    private static final long COALESCE_WINDOW = 100; // 100ms内的更新合并
+    private static final long MIN_NOTIFY_INTERVAL = 250; // 每秒最多4次，低于系统限制
+
+    private final Context context;
+    private final NotificationManager notificationManager;
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final int notificationId;
+    private final NotificationCompat.Builder builder;
+
+    private static final class Message {
+        final String title;
+        final String text;
+
+        Message(String title, String text) {
+            this.title = title;
+            this.text = text;
+        }
+    }
+
+    private final ArrayDeque<Message> pendingResults = new ArrayDeque<>();
+    private String pendingTitle;
+    private String pendingText;
+    private String pendingToast;
+    private int pendingToastDuration;
+    private boolean flushScheduled = false;
+    private long lastNotifyTime = 0;
+
+    private int requestedCount = 0;
+    private int notifiedCount = 0;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    NotificationPipeline(Context context, NotificationManager notificationManager, Handler handler,
+                         String channelId, int notificationId) {
+        this.context = context;
+        this.notificationManager = notificationManager;
+        this.handler = handler;
+        this.notificationId = notificationId;
+
+        Intent notificationIntent = new Intent(context, MainActivity.class);
+        notificationIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        PendingIntent pendingIntent = PendingIntent.getActivity(
+                context, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
+
+        builder = new NotificationCompat.Builder(context, channelId)
+                .setSmallIcon(R.drawable.ic_launcher_foreground) // 确保有此图标资源
+                .setContentIntent(pendingIntent)
+                .setOnlyAlertOnce(true)
+                .setPriority(NotificationCompat.PRIORITY_DEFAULT);
+    }
+
+    void post(String title, String text) {
+        pendingTitle = title;
+        pendingText = text;
+        requestedCount++;
+        scheduleFlush();
+    }
+
+    /**
+     * 通知和Toast一起发出，窗口内只显示最后一条Toast。
+     */
+    void post(String title, String text, String toastText, int toastDuration) {
+        pendingToast = toastText;
+        pendingToastDuration = toastDuration;
+        post(title, text);
+    }
+
+    /**
+     * 丢弃窗口内还没发出的进度更新，这条通知不参与合并，在限流允许的最早时间发出；Toast立即显示。
+     */
+    void postNow(String title, String text, String toastText, int toastDuration) {
+        pendingTitle = null;
+        pendingText = null;
+        pendingResults.add(new Message(title, text));
+        pendingToast = toastText;
+        pendingToastDuration = toastDuration;
+        requestedCount++;
+        showPendingToast();
+
+        handler.removeCallbacks(flushRunnable);
+        flushScheduled = true;
+        handler.postDelayed(flushRunnable, Math.max(0, MIN_NOTIFY_INTERVAL - sinceLastNotify()));
+    }
+
+    void toast(String toastText, int toastDuration) {
+        pendingToast = toastText;
+        pendingToastDuration = toastDuration;
+        scheduleFlush();
+    }
+
+    void cancel() {
+        handler.removeCallbacks(flushRunnable);
+        flushScheduled = false;
+        if (!pendingResults.isEmpty()) {
+            Log.w(TAG, "取消通知时还有" + pendingResults.size() + "条结果未发出");
+            pendingResults.clear();
+        }
+        pendingTitle = null;
+        pendingToast = null;
+        try {
+            if (notificationManager != null) {
+                notificationManager.cancel(notificationId);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "取消通知失败", e);
+        }
+        Log.d(TAG, "通知请求" + requestedCount + "次，实际发送" + notifiedCount + "次");
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled) {
+            return;
+        }
+        long delay = Math.max(COALESCE_WINDOW, MIN_NOTIFY_INTERVAL - sinceLastNotify());
+        flushScheduled = true;
+        handler.postDelayed(flushRunnable, delay);
+    }
+
+    private long sinceLastNotify() {
+        return SystemClock.uptimeMillis() - lastNotifyTime;
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        showPendingToast();
+
+        // 结果消息优先，每次只发一条，其余的按限流间隔继续发出
+        Message result = pendingResults.poll();
+        if (result != null) {
+            notify(result.title, result.text);
+            if (!pendingResults.isEmpty() || pendingTitle != null) {
+                flushScheduled = true;
+                handler.postDelayed(flushRunnable, MIN_NOTIFY_INTERVAL);
+            }
+            return;
+        }
+
+        if (pendingTitle == null) {
+            return;
+        }
+        String title = pendingTitle;
+        String text = pendingText;
+        pendingTitle = null;
+        pendingText = null;
+        notify(title, text);
+    }
+
+    private void showPendingToast() {
+        if (pendingToast != null) {
+            // Toast属于界面操作，回到主线程显示
+            final String toastText = pendingToast;
+            final int toastDuration = pendingToastDuration;
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Toast.makeText(context, toastText, toastDuration).show();
+                    } catch (Exception e) {
+                        Log.e(TAG, "显示Toast失败", e);
+                    }
+                }
+            });
+            pendingToast = null;
+        }
+    }
+
+    private void notify(String title, String text) {
+        try {
+            if (notificationManager == null) {
+                Log.e(TAG, "通知管理器为空");
+                return;
+            }
+            builder.setContentTitle(title)
+                    .setContentText(text);
+            notificationManager.notify(notificationId, builder.build());
+            lastNotifyTime = SystemClock.uptimeMillis();
+            notifiedCount++;
+        } catch (Exception e) {
+            Log.e(TAG, "显示通知失败", e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.dingdingjumper;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * 打卡结束后显示结果的轻量页面，不加载布局、不读取设置，点击任意位置关闭。
+ * 由服务放在桌面之上的单独任务中启动，关闭后回到桌面。
+ */
+public class PunchResultActivity extends Activity {
+
+    static final String EXTRA_MESSAGE = "message";
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        TextView messageView = new TextView(this);
+        messageView.setText(getIntent().getStringExtra(EXTRA_MESSAGE));
+        messageView.setTextSize(18);
+        messageView.setGravity(Gravity.CENTER);
+        int padding = (int) (24 * getResources().getDisplayMetrics().density);
+        messageView.setPadding(padding, padding, padding, padding);
+        messageView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                finish();
+            }
+        });
+        setContentView(messageView);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.dingdingjumper;
+
+import android.util.Log;
+import android.view.accessibility.AccessibilityNodeInfo;
+
+/**
+ * 在钉钉当前窗口中查找打卡结果。按层广度优先遍历，限制最大深度和最多访问的节点数，
+ * 队列使用预先分配的数组反复利用，访问过的每个节点都会回收，钉钉层级很深时也只需几毫秒。
+ * 只在一个线程上使用，不是线程安全的。
+ */
+final class PunchResultVerifier {
+
+    private static final String TAG = "PunchResultVerifier";
+
+    static final int DEFAULT_MAX_DEPTH = 24;
+    static final int DEFAULT_MAX_NODES = 400;
+
+    private final int maxDepth;
+    private final int maxNodes;
+    private final String packageName;
+
+    // 每个节点最多入队一次，数组长度等于节点预算即可，不需要环形队列
+    private final AccessibilityNodeInfo[] queue;
+    private final int[] depths;
+
+    private int lastVisitedCount;
+    private long lastElapsedNanos;
+
+    PunchResultVerifier(String packageName) {
+        this(packageName, DEFAULT_MAX_DEPTH, DEFAULT_MAX_NODES);
+    }
+
+    PunchResultVerifier(String packageName, int maxDepth, int maxNodes) {
+        this.packageName = packageName;
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        queue = new AccessibilityNodeInfo[maxNodes];
+        depths = new int[maxNodes];
+    }
+
+    /**
+     * 检查以root为根的窗口。root的所有权交给本方法，调用后不能再使用。
+     */
+    PunchVerification verify(AccessibilityNodeInfo root) {
+        long start = System.nanoTime();
+        if (root == null) {
+            lastVisitedCount = 0;
+            lastElapsedNanos = System.nanoTime() - start;
+            return PunchVerification.UNKNOWN;
+        }
+        if (packageName != null && !packageName.equals(String.valueOf(root.getPackageName()))) {
+            root.recycle();
+            lastVisitedCount = 0;
+            lastElapsedNanos = System.nanoTime() - start;
+            return PunchVerification.UNKNOWN;
+        }
+
+        PunchVerification result = PunchVerification.UNKNOWN;
+        int head = 0;
+        int tail = 0;
+        queue[tail] = root;
+        depths[tail++] = 0;
+
+        try {
+            while (head < tail) {
+                AccessibilityNodeInfo node = queue[head];
+                int depth = depths[head];
+                queue[head++] = null;
+                try {
+                    PunchVerification match = PunchVerification.match(node.getText());
+                    if (match == null) {
+                        match = PunchVerification.match(node.getContentDescription());
+                    }
+                    if (match != null) {
+                        result = match;
+                        break;
+                    }
+
+                    if (depth >= maxDepth) {
+                        continue;
+                    }
+                    int childCount = node.getChildCount();
+                    for (int i = 0; i < childCount && tail < maxNodes; i++) {
+                        AccessibilityNodeInfo child = node.getChild(i);
+                        if (child != null) {
+                            queue[tail] = child;
+                            depths[tail++] = depth + 1;
+                        }
+                    }
+                } finally {
+                    node.recycle();
+                }
+            }
+        } finally {
+            // 提前结束时回收还在队列中的节点
+            lastVisitedCount = head;
+            for (int i = head; i < tail; i++) {
+                queue[i].recycle();
+                queue[i] = null;
+            }
+            lastElapsedNanos = System.nanoTime() - start;
+        }
+
+        Log.d(TAG, "核对打卡结果: " + result + "，访问" + lastVisitedCount + "个节点，耗时"
+                + lastElapsedNanos / 1000 + "us");
+        return result;
+    }
+
+    int getLastVisitedCount() {
+        return lastVisitedCount;
+    }
+
+    long getLastElapsedNanos() {
+        return lastElapsedNanos;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.dingdingjumper;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 进程内共享的设置。第一次使用时从SharedPreferences读取一次，之后所有读取都只访问内存中的快照；
+ * 修改时整体替换快照、通知监听器，并用apply()在后台写回磁盘。
+ */
+final class SettingsStore {
+
+    private static final String TAG = "SettingsStore";
+
+    private static final String PREF_NAME = "DingDingJumperPrefs";
+    private static final String PREF_CHECK_IN_HOUR = "checkInHour";
+    private static final String PREF_CHECK_IN_MINUTE = "checkInMinute";
+    private static final String PREF_CHECK_OUT_HOUR = "checkOutHour";
+    private static final String PREF_CHECK_OUT_MINUTE = "checkOutMinute";
+    private static final String PREF_ALARM_ENABLED = "alarmEnabled";
+    private static final String PREF_DELAY_SECONDS = "delaySeconds";
+    private static final String PREF_EXTRA_SLOTS = "extraSlots";
+    private static final String PREF_WORKDAYS_ONLY = "workdaysOnly";
+    private static final String PREF_EVENT_DRIVEN_RETURN = "eventDrivenReturn";
+    private static final String PREF_GESTURE_SCRIPT = "gestureScript";
+    private static final String PREF_RETURN_STRATEGY = "returnStrategy";
+
+    interface Listener {
+        /**
+         * 在调用update()的线程上回调。
+         */
+        void onSettingsChanged(AppSettings oldSettings, AppSettings newSettings);
+    }
+
+    private static SettingsStore instance;
+
+    private final SharedPreferences prefs;
+    private final SettingsSnapshot current;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    static synchronized SettingsStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new SettingsStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SettingsStore(Context context) {
+        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        current = new SettingsSnapshot(load(prefs));
+    }
+
+    AppSettings get() {
+        return current.get();
+    }
+
+    /**
+     * 替换当前设置。和当前快照相同时什么都不做。
+     */
+    void update(AppSettings settings) {
+        AppSettings old = current.publish(settings);
+        if (old == null) {
+            return;
+        }
+
+        prefs.edit()
+                .putInt(PREF_CHECK_IN_HOUR, settings.checkInHour)
+                .putInt(PREF_CHECK_IN_MINUTE, settings.checkInMinute)
+                .putInt(PREF_CHECK_OUT_HOUR, settings.checkOutHour)
+                .putInt(PREF_CHECK_OUT_MINUTE, settings.checkOutMinute)
+                .putBoolean(PREF_ALARM_ENABLED, settings.alarmEnabled)
+                .putInt(PREF_DELAY_SECONDS, settings.delaySeconds)
+                .putString(PREF_EXTRA_SLOTS, settings.extraSlots)
+                .putBoolean(PREF_WORKDAYS_ONLY, settings.workdaysOnly)
+                .putBoolean(PREF_EVENT_DRIVEN_RETURN, settings.eventDrivenReturn)
+                .putString(PREF_GESTURE_SCRIPT, settings.gestureScript)
+                .putString(PREF_RETURN_STRATEGY, settings.returnStrategy.name())
+                .apply();
+
+        for (Listener listener : listeners) {
+            try {
+                listener.onSettingsChanged(old, settings);
+            } catch (Exception e) {
+                Log.e(TAG, "设置变化通知失败", e);
+            }
+        }
+    }
+
+    void addListener(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private static AppSettings load(SharedPreferences prefs) {
+        return new AppSettings.Builder()
+                .setCheckInTime(prefs.getInt(PREF_CHECK_IN_HOUR, 9), prefs.getInt(PREF_CHECK_IN_MINUTE, 0))
+                .setCheckOutTime(prefs.getInt(PREF_CHECK_OUT_HOUR, 18), prefs.getInt(PREF_CHECK_OUT_MINUTE, 0))
+                .setAlarmEnabled(prefs.getBoolean(PREF_ALARM_ENABLED, false))
+                .setDelaySeconds(prefs.getInt(PREF_DELAY_SECONDS, 60))
+                .setExtraSlots(prefs.getString(PREF_EXTRA_SLOTS, ""))
+                .setWorkdaysOnly(prefs.getBoolean(PREF_WORKDAYS_ONLY, true))
+                .setEventDrivenReturn(prefs.getBoolean(PREF_EVENT_DRIVEN_RETURN, true))
+                .setGestureScript(prefs.getString(PREF_GESTURE_SCRIPT, ""))
+                .setReturnStrategy(ReturnStrategy.fromName(prefs.getString(PREF_RETURN_STRATEGY, null),
+                        ReturnStrategy.HOME))
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.dingdingjumper;
+
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.Trace;
+import android.os.strictmode.Violation;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 界面启动的埋点。每个阶段同时写入systrace/Perfetto的Trace区段和StartupReport，
+ * 在工具中和应用内看到的是同一组数据。begin()和end()必须在同一线程上成对调用。
+ * API 28起首帧前主线程上的磁盘读写和网络访问由StrictMode报告，超出StartupSequence中登记的数量时警告；
+ * 更低版本只统计StartupSequence中标为阻塞的步骤。
+ */
+final class StartupTracer {
+
+    private static final String TAG = "StartupTracer";
+    private static final String APP_PACKAGE_PREFIX = "com.example.dingdingjumper.";
+
+    // StrictMode在主线程上回调监听器，直接执行，保证首帧前的违规在首帧前计入
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final String prefix;
+    private final List<StartupSequence.Step> steps;
+    private final StartupReport report = new StartupReport(SystemTimeSource.INSTANCE);
+    private StrictMode.ThreadPolicy previousPolicy;
+
+    StartupTracer(String prefix, List<StartupSequence.Step> steps) {
+        this.prefix = prefix;
+        this.steps = steps;
+    }
+
+    /**
+     * 在主线程上、onCreate的最开始调用，开始记录阻塞调用，首帧后自动停止。
+     */
+    void start() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P || previousPolicy != null) {
+            return;
+        }
+        previousPolicy = StrictMode.getThreadPolicy();
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder(previousPolicy)
+                .detectDiskReads()
+                .detectDiskWrites()
+                .detectNetwork()
+                .penaltyListener(DIRECT_EXECUTOR, new StrictMode.OnThreadViolationListener() {
+                    @Override
+                    public void onThreadViolation(Violation violation) {
+                        report.noteBlockingCall(describe(violation));
+                    }
+                })
+                .build());
+    }
+
+    long begin(StartupSequence.Step step) {
+        Trace.beginSection(prefix + "." + step.name);
+        // StrictMode已在记录时不重复计数
+        if (step.blocking && previousPolicy == null) {
+            report.noteBlockingCall(step.name);
+        }
+        return report.now();
+    }
+
+    void end(StartupSequence.Step step, long startNanos) {
+        Trace.endSection();
+        report.recordSection(step.name, startNanos);
+    }
+
+    void firstDraw() {
+        report.markFirstDraw();
+        if (previousPolicy != null) {
+            StrictMode.setThreadPolicy(previousPolicy);
+            int declared = StartupSequence.countBlockingBeforeFirstDraw(steps);
+            if (report.getBlockingCallCount() > declared) {
+                Log.w(TAG, prefix + "首帧前有StartupSequence中未登记的阻塞调用，登记" + declared + "次: "
+                        + report.describe());
+            }
+        }
+        if (report.isOverBudget()) {
+            Log.w(TAG, prefix + "首帧前阻塞调用" + report.getBlockingCallCount()
+                    + "次，超过预算" + StartupReport.BLOCKING_CALL_BUDGET + "次: " + report.describe());
+        }
+    }
+
+    void interactive() {
+        report.markInteractive();
+        Log.d(TAG, prefix + "启动完成: " + report.describe());
+    }
+
+    StartupReport getReport() {
+        return report;
+    }
+
+    /**
+     * 例如 "DiskReadViolation@SettingsStore.<init>"，取调用栈中第一个属于本应用的位置。
+     */
+    private static String describe(Violation violation) {
+        String name = violation.getClass().getSimpleName();
+        for (StackTraceElement element : violation.getStackTrace()) {
+            String className = element.getClassName();
+            if (className.startsWith(APP_PACKAGE_PREFIX) && !className.startsWith(StartupTracer.class.getName())) {
+                return name + "@" + className.substring(APP_PACKAGE_PREFIX.length()) + "." + element.getMethodName();
+            }
+        }
+        return name;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.dingdingjumper;
+
+import android.os.SystemClock;
+
+final class SystemTimeSource implements TimeSource {
+
+    static final SystemTimeSource INSTANCE = new SystemTimeSource();
+
+    private SystemTimeSource() {
+    }
+
+    @Override
+    public long elapsedRealtimeNanos() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.dingdingjumper;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.util.Log;
+
+/**
+ * 钉钉安装状态和启动Activity的缓存。进程内只解析一次，钉钉安装、升级或卸载时失效，
+ * 登记闹钟时预先解析，打卡时启动钉钉只需要一次startActivity。
+ */
+final class TargetAppResolver {
+
+    private static final String TAG = "TargetAppResolver";
+    static final String TARGET_PACKAGE_NAME = "com.alibaba.android.rimet";
+
+    /**
+     * 一次解析结果。已安装但没有启动Activity时launchComponent为null。
+     */
+    static final class Resolution {
+        final boolean installed;
+        final ComponentName launchComponent;
+
+        Resolution(boolean installed, ComponentName launchComponent) {
+            this.installed = installed;
+            this.launchComponent = launchComponent;
+        }
+
+        Intent createLaunchIntent() {
+            if (launchComponent == null) {
+                return null;
+            }
+            // 与getLaunchIntentForPackage()返回的Intent一致
+            Intent intent = new Intent(Intent.ACTION_MAIN);
+            intent.addCategory(Intent.CATEGORY_LAUNCHER);
+            intent.setComponent(launchComponent);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            return intent;
+        }
+    }
+
+    private static TargetAppResolver instance;
+
+    private final PackageManager packageManager;
+    private final ResolutionCache<Resolution> cache = new ResolutionCache<>(new ResolutionCache.Loader<Resolution>() {
+        @Override
+        public Resolution load() {
+            return resolve();
+        }
+    });
+
+    static synchronized TargetAppResolver getInstance(Context context) {
+        if (instance == null) {
+            instance = new TargetAppResolver(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private TargetAppResolver(Context context) {
+        packageManager = context.getPackageManager();
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addDataScheme("package");
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                Uri data = intent.getData();
+                if (data != null && TARGET_PACKAGE_NAME.equals(data.getSchemeSpecificPart())) {
+                    Log.d(TAG, "钉钉安装状态变化: " + intent.getAction());
+                    invalidate();
+                }
+            }
+        }, filter);
+    }
+
+    /**
+     * 返回缓存的解析结果，没有缓存时解析一次。
+     */
+    Resolution get() {
+        return cache.get();
+    }
+
+    /**
+     * 预先解析，登记闹钟时调用。
+     */
+    void prewarm() {
+        get();
+    }
+
+    void invalidate() {
+        cache.invalidate();
+    }
+
+    int getResolveCount() {
+        return cache.getLoadCount();
+    }
+
+    private Resolution resolve() {
+        Resolution result;
+        Intent launchIntent = packageManager.getLaunchIntentForPackage(TARGET_PACKAGE_NAME);
+        if (launchIntent != null) {
+            result = new Resolution(true, launchIntent.getComponent());
+        } else {
+            // 没有启动Activity时区分未安装和已安装两种情况
+            result = new Resolution(isInstalled(), null);
+        }
+        Log.d(TAG, "钉钉解析结果 - 已安装: " + result.installed + ", 启动Activity: " + result.launchComponent);
+        return result;
+    }
+
+    private boolean isInstalled() {
+        try {
+            packageManager.getApplicationInfo(TARGET_PACKAGE_NAME, 0);
+            return true;
+        } catch (PackageManager.NameNotFoundException e) {
+            return false;
+        }
+    }
+}
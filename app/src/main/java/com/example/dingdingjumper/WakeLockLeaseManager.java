@@ -0,0 +1,184 @@
+package com.example.dingdingjumper;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 唤醒锁租约管理。AlarmReceiver和无障碍服务共用，每个租约绑定一个打卡任务ID，
+ * 任务结束立即释放，并统计每次任务和每天的持有时长。
+ * 靠超时自动释放的租约会被标记出来，说明有任务没有正常结束。
+ */
+final class WakeLockLeaseManager {
+
+    private static final String TAG = "WakeLockLease";
+    private static final String WAKE_LOCK_TAG = "DingDingJumper:ClockRunWakeLock";
+
+    private static final String PREF_NAME = "DingDingJumperPrefs";
+    private static final String PREF_HELD_DAY = "wakeLockHeldDay";
+    private static final String PREF_HELD_DAY_MILLIS = "wakeLockHeldDayMillis";
+    private static final String PREF_EXPIRED_COUNT = "wakeLockExpiredCount";
+
+    private static final int MAX_RUN_RECORDS = 32;
+
+    private static WakeLockLeaseManager instance;
+
+    private final PowerManager powerManager;
+    private final SharedPreferences prefs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final Map<Long, Lease> leases = new HashMap<>();
+    private final Map<Long, Long> heldMillisByRun = new LinkedHashMap<Long, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > MAX_RUN_RECORDS;
+        }
+    };
+
+    private static final class Lease {
+        final long runId;
+        final PowerManager.WakeLock wakeLock;
+        final long acquiredAt;
+        long timeoutAt;
+        int holders;
+        Runnable timeoutCheck;
+
+        Lease(long runId, PowerManager.WakeLock wakeLock, long acquiredAt) {
+            this.runId = runId;
+            this.wakeLock = wakeLock;
+            this.acquiredAt = acquiredAt;
+        }
+    }
+
+    static synchronized WakeLockLeaseManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new WakeLockLeaseManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private WakeLockLeaseManager(Context context) {
+        powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * 为任务获取唤醒锁。同一任务重复获取只增加持有者计数并延长超时，不会创建新的唤醒锁。
+     */
+    synchronized void acquire(long runId, String owner, long timeoutMs) {
+        long now = SystemClock.elapsedRealtime();
+        Lease lease = leases.get(runId);
+        try {
+            if (lease == null) {
+                PowerManager.WakeLock wakeLock = powerManager.newWakeLock(
+                        PowerManager.PARTIAL_WAKE_LOCK, WAKE_LOCK_TAG);
+                wakeLock.setReferenceCounted(false);
+                lease = new Lease(runId, wakeLock, now);
+                leases.put(runId, lease);
+            }
+            lease.holders++;
+            lease.timeoutAt = Math.max(lease.timeoutAt, now + timeoutMs);
+            lease.wakeLock.acquire(lease.timeoutAt - now);
+            scheduleTimeoutCheck(lease);
+            Log.d(TAG, owner + "获取唤醒锁，任务ID: " + runId + "，持有者: " + lease.holders);
+        } catch (Exception e) {
+            Log.e(TAG, "获取唤醒锁失败", e);
+        }
+    }
+
+    /**
+     * 任务结束时调用，无论有几个持有者都立即释放。
+     */
+    synchronized void release(long runId) {
+        Lease lease = leases.remove(runId);
+        if (lease == null) {
+            return;
+        }
+
+        handler.removeCallbacks(lease.timeoutCheck);
+        try {
+            if (lease.wakeLock.isHeld()) {
+                lease.wakeLock.release();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "释放唤醒锁失败", e);
+        }
+
+        long heldMillis = SystemClock.elapsedRealtime() - lease.acquiredAt;
+        recordHeld(runId, heldMillis);
+        Log.d(TAG, "释放唤醒锁，任务ID: " + runId + "，持有" + heldMillis + "ms");
+    }
+
+    synchronized void releaseAll() {
+        Long[] runIds = leases.keySet().toArray(new Long[0]);
+        for (Long runId : runIds) {
+            release(runId);
+        }
+    }
+
+    synchronized long getHeldMillis(long runId) {
+        Long heldMillis = heldMillisByRun.get(runId);
+        return heldMillis != null ? heldMillis : 0;
+    }
+
+    synchronized long getHeldMillisToday() {
+        return prefs.getInt(PREF_HELD_DAY, 0) == todayKey() ? prefs.getLong(PREF_HELD_DAY_MILLIS, 0) : 0;
+    }
+
+    synchronized int getExpiredCount() {
+        return prefs.getInt(PREF_EXPIRED_COUNT, 0);
+    }
+
+    private void scheduleTimeoutCheck(final Lease lease) {
+        if (lease.timeoutCheck != null) {
+            handler.removeCallbacks(lease.timeoutCheck);
+        }
+        lease.timeoutCheck = new Runnable() {
+            @Override
+            public void run() {
+                onLeaseTimeout(lease);
+            }
+        };
+        handler.postDelayed(lease.timeoutCheck, lease.timeoutAt - SystemClock.elapsedRealtime());
+    }
+
+    private synchronized void onLeaseTimeout(Lease lease) {
+        if (leases.get(lease.runId) != lease) {
+            return;
+        }
+
+        // 任务没有释放租约，唤醒锁已由系统超时释放
+        leases.remove(lease.runId);
+        long heldMillis = lease.timeoutAt - lease.acquiredAt;
+        recordHeld(lease.runId, heldMillis);
+        prefs.edit().putInt(PREF_EXPIRED_COUNT, prefs.getInt(PREF_EXPIRED_COUNT, 0) + 1).apply();
+        Log.w(TAG, "唤醒锁超时释放，任务未正常结束，任务ID: " + lease.runId + "，持有" + heldMillis + "ms");
+    }
+
+    private void recordHeld(long runId, long heldMillis) {
+        heldMillisByRun.put(runId, heldMillis);
+
+        int today = todayKey();
+        long dayMillis = prefs.getInt(PREF_HELD_DAY, 0) == today ? prefs.getLong(PREF_HELD_DAY_MILLIS, 0) : 0;
+        prefs.edit()
+                .putInt(PREF_HELD_DAY, today)
+                .putLong(PREF_HELD_DAY_MILLIS, dayMillis + heldMillis)
+                .apply();
+    }
+
+    private static int todayKey() {
+        Calendar calendar = Calendar.getInstance();
+        return calendar.get(Calendar.YEAR) * 10000
+                + (calendar.get(Calendar.MONTH) + 1) * 100
+                + calendar.get(Calendar.DAY_OF_MONTH);
+    }
+}
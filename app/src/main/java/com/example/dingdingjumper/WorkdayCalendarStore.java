@@ -0,0 +1,110 @@
+package com.example.dingdingjumper;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+/**
+ * 工作日日历的加载和导入。先读取内置的节假日数据，再读取用户导入的文件（如果有），
+ * 加载结果在进程内缓存，导入新文件后重新加载。不访问网络。
+ */
+final class WorkdayCalendarStore {
+
+    private static final String TAG = "WorkdayCalendarStore";
+    private static final String IMPORTED_FILE_NAME = "workdays.txt";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static WorkdayCalendarStore instance;
+
+    private final Context context;
+    private WorkdayCalendar calendar;
+
+    static synchronized WorkdayCalendarStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new WorkdayCalendarStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private WorkdayCalendarStore(Context context) {
+        this.context = context;
+    }
+
+    synchronized WorkdayCalendar get() {
+        if (calendar == null) {
+            calendar = load();
+        }
+        return calendar;
+    }
+
+    /**
+     * 导入节假日文件，先校验格式再替换已导入的文件。
+     */
+    synchronized void importFrom(Uri uri) throws IOException {
+        byte[] content = readAll(context.getContentResolver().openInputStream(uri));
+        new WorkdayCalendar().load(new StringReader(new String(content, UTF_8)));
+
+        OutputStream output = new FileOutputStream(new File(context.getFilesDir(), IMPORTED_FILE_NAME));
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+        calendar = load();
+    }
+
+    private WorkdayCalendar load() {
+        WorkdayCalendar result = new WorkdayCalendar();
+        try {
+            readInto(result, context.getResources().openRawResource(R.raw.cn_workdays));
+        } catch (IOException e) {
+            Log.e(TAG, "读取内置节假日数据失败", e);
+        }
+
+        File imported = new File(context.getFilesDir(), IMPORTED_FILE_NAME);
+        if (imported.exists()) {
+            try {
+                readInto(result, new FileInputStream(imported));
+            } catch (IOException e) {
+                Log.e(TAG, "读取导入的节假日数据失败", e);
+            }
+        }
+        return result;
+    }
+
+    private static void readInto(WorkdayCalendar calendar, InputStream input) throws IOException {
+        try {
+            calendar.load(new InputStreamReader(input, UTF_8));
+        } finally {
+            input.close();
+        }
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        if (input == null) {
+            throw new IOException("无法打开文件");
+        }
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.dingdingjumper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 无障碍事件过滤，onAccessibilityEvent中最先执行的部分。事件类型取值与AccessibilityEvent一致。
+ */
+@State(Scope.Benchmark)
+public class AccessibilityEventFilterBenchmark {
+
+    private static final int TYPE_VIEW_CLICKED = 0x1;
+    private static final int TYPE_WINDOW_STATE_CHANGED = 0x20;
+    private static final int TYPE_WINDOW_CONTENT_CHANGED = 0x800;
+
+    private static final String DINGTALK = "com.alibaba.android.rimet";
+
+    private final AccessibilityEventFilter activeFilter = new AccessibilityEventFilter(
+            TYPE_WINDOW_STATE_CHANGED | TYPE_WINDOW_CONTENT_CHANGED, DINGTALK);
+    private final AccessibilityEventFilter idleFilter = new AccessibilityEventFilter(
+            TYPE_WINDOW_STATE_CHANGED | TYPE_WINDOW_CONTENT_CHANGED, DINGTALK);
+
+    // 事件中的包名是系统传来的另一个对象，用StringBuilder避免和常量是同一个引用
+    private final CharSequence dingTalkPackage = new StringBuilder(DINGTALK);
+    private final CharSequence otherPackage = new StringBuilder("com.android.systemui");
+
+    @Setup
+    public void setUp() {
+        activeFilter.setActive(true);
+    }
+
+    @Benchmark
+    public boolean acceptDingTalkEvent() {
+        return activeFilter.accept(TYPE_WINDOW_CONTENT_CHANGED, dingTalkPackage);
+    }
+
+    @Benchmark
+    public boolean dropOtherPackage() {
+        return activeFilter.accept(TYPE_WINDOW_CONTENT_CHANGED, otherPackage);
+    }
+
+    @Benchmark
+    public boolean dropUndeclaredType() {
+        return activeFilter.accept(TYPE_VIEW_CLICKED, dingTalkPackage);
+    }
+
+    @Benchmark
+    public boolean dropWhileIdle() {
+        return idleFilter.accept(TYPE_WINDOW_CONTENT_CHANGED, dingTalkPackage);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.dingdingjumper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * SettingsStore使用的设置快照：读取、生成修改后的快照，以及发布未变化和已变化的快照。
+ */
+@State(Scope.Benchmark)
+public class AppSettingsBenchmark {
+
+    private SettingsSnapshot snapshot;
+    private AppSettings unchanged;
+    private AppSettings changed;
+    private AppSettings original;
+
+    @Setup
+    public void setUp() {
+        original = new AppSettings.Builder()
+                .setCheckInTime(9, 0)
+                .setCheckOutTime(18, 0)
+                .setAlarmEnabled(true)
+                .setDelaySeconds(60)
+                .setExtraSlots("1-5 12:00 上班 30")
+                .build();
+        snapshot = new SettingsSnapshot(original);
+        unchanged = original.buildUpon().build();
+        changed = original.buildUpon().setDelaySeconds(90).build();
+    }
+
+    @Benchmark
+    public int read() {
+        return snapshot.get().delaySeconds;
+    }
+
+    @Benchmark
+    public AppSettings buildUpdated() {
+        return snapshot.get().buildUpon().setDelaySeconds(90).build();
+    }
+
+    @Benchmark
+    public AppSettings publishUnchanged() {
+        // 未变化时不写磁盘也不通知
+        return snapshot.publish(unchanged);
+    }
+
+    @Benchmark
+    public AppSettings publishChanged() {
+        AppSettings next = snapshot.get() == changed ? original : changed;
+        return snapshot.publish(next);
+    }
+}
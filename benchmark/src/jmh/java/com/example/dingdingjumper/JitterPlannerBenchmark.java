@@ -0,0 +1,26 @@
+package com.example.dingdingjumper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * 生成随机延迟。
+ */
+@State(Scope.Benchmark)
+public class JitterPlannerBenchmark {
+
+    private final JitterPlanner planner = new JitterPlanner(new Random(42));
+
+    @Benchmark
+    public int nextOffset() {
+        return planner.nextOffsetSeconds(60);
+    }
+
+    @Benchmark
+    public int nextOffsetWithoutJitter() {
+        return planner.nextOffsetSeconds(0);
+    }
+}
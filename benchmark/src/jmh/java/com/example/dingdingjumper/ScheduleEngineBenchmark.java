@@ -0,0 +1,70 @@
+package com.example.dingdingjumper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * 计算下一次打卡时间。AlarmScheduler.rearm()每次都会编译时段并查找下一次触发。
+ */
+@State(Scope.Benchmark)
+public class ScheduleEngineBenchmark {
+
+    private static final String HOLIDAYS = "休 2026-01-01 2026-01-03\n"
+            + "班 2026-01-04\n"
+            + "休 2026-02-15 2026-02-23\n"
+            + "班 2026-02-14\n"
+            + "班 2026-02-28\n"
+            + "休 2026-10-01 2026-10-07\n"
+            + "班 2026-09-20\n"
+            + "班 2026-10-10\n";
+
+    private List<ScheduleSlot> slots;
+    private WorkdayCalendar calendar;
+    private ScheduleEngine engine;
+    private long now;
+    private long beforeHoliday;
+
+    @Setup
+    public void setUp() throws IOException {
+        calendar = new WorkdayCalendar();
+        calendar.load(new StringReader(HOLIDAYS));
+
+        // 与默认设置一致：工作日上下班两个时段，再加两个额外时段
+        slots = new ArrayList<>();
+        slots.add(ScheduleSlot.onWorkdays(9, 0, "上班", 60));
+        slots.add(ScheduleSlot.onWorkdays(18, 0, "下班", 60));
+        slots.addAll(ScheduleSlot.parseLines("1-5 12:00 上班 30\n1,3,5 13:30 下班"));
+        engine = new ScheduleEngine(slots, TimeZone.getTimeZone("Asia/Shanghai"), calendar);
+
+        now = 1789700000000L; // 2026-09-18
+        beforeHoliday = 1790784000000L; // 2026-10-01 00:00 +08:00，需要跳过整个国庆假期
+    }
+
+    @Benchmark
+    public ScheduleEngine.Fire nextFire() {
+        return engine.nextFireAfter(now);
+    }
+
+    @Benchmark
+    public ScheduleEngine.Fire nextFireAcrossHoliday() {
+        return engine.nextFireAfter(beforeHoliday);
+    }
+
+    @Benchmark
+    public ScheduleEngine.Fire compileAndNextFire() {
+        return new ScheduleEngine(slots, TimeZone.getTimeZone("Asia/Shanghai"), calendar).nextFireAfter(now);
+    }
+
+    @Benchmark
+    public List<ScheduleSlot> parseSlots() {
+        return ScheduleSlot.parseLines("1-5 12:00 上班 30\n1,3,5 13:30 下班\n工作日 08:45 上班 60");
+    }
+}
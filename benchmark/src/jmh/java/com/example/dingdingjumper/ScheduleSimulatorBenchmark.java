@@ -0,0 +1,51 @@
+package com.example.dingdingjumper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回放一整年的打卡，包括夏令时切换和Doze延迟，应保持在一秒以内。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ScheduleSimulatorBenchmark {
+
+    private final List<ScheduleSlot> slots = new ArrayList<>();
+    private TimeZone timeZone;
+    private long startTime;
+    private long endTime;
+
+    @Setup
+    public void setUp() {
+        slots.add(ScheduleSlot.onWorkdays(9, 0, "上班", 60));
+        slots.add(ScheduleSlot.onWorkdays(18, 0, "下班", 60));
+        slots.add(new ScheduleSlot(ScheduleSlot.EVERY_DAY, 2, 30, "上班", 30)); // 落在夏令时切换的那一小时
+
+        timeZone = TimeZone.getTimeZone("America/New_York");
+        Calendar start = Calendar.getInstance(timeZone);
+        start.clear();
+        start.set(2026, Calendar.JANUARY, 1);
+        startTime = start.getTimeInMillis();
+        start.add(Calendar.YEAR, 1);
+        endTime = start.getTimeInMillis();
+    }
+
+    @Benchmark
+    public ScheduleSimulator.Result replayYear() {
+        ScheduleSimulator simulator = new ScheduleSimulator(slots, timeZone, new WorkdayCalendar(), 2026);
+        simulator.setDeliveryDelay(ScheduleSimulator.doze(0.2, 9 * 60 * 1000L));
+        return simulator.run(startTime, endTime);
+    }
+}
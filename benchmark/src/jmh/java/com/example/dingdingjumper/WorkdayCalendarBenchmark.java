@@ -0,0 +1,59 @@
+package com.example.dingdingjumper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * 工作日判断和节假日数据解析。
+ */
+@State(Scope.Benchmark)
+public class WorkdayCalendarBenchmark {
+
+    private static final String HOLIDAYS = "休 2026-01-01 2026-01-03\n"
+            + "班 2026-01-04\n"
+            + "休 2026-02-15 2026-02-23\n"
+            + "班 2026-02-14\n"
+            + "班 2026-02-28\n"
+            + "休 2026-04-04 2026-04-06\n"
+            + "休 2026-05-01 2026-05-05\n"
+            + "班 2026-05-09\n"
+            + "休 2026-06-19 2026-06-21\n"
+            + "休 2026-09-25 2026-09-27\n"
+            + "休 2026-10-01 2026-10-07\n"
+            + "班 2026-09-20\n"
+            + "班 2026-10-10\n";
+
+    private WorkdayCalendar calendar;
+    private int dayOfYear;
+
+    @Setup
+    public void setUp() throws IOException {
+        calendar = new WorkdayCalendar();
+        calendar.load(new StringReader(HOLIDAYS));
+    }
+
+    @Benchmark
+    public boolean isWorkday() {
+        dayOfYear = dayOfYear % 365 + 1;
+        return calendar.isWorkday(2026, dayOfYear);
+    }
+
+    @Benchmark
+    public boolean isWorkdayWithoutData() {
+        // 没有数据的年份按周一至周五计算
+        dayOfYear = dayOfYear % 365 + 1;
+        return calendar.isWorkday(2030, dayOfYear);
+    }
+
+    @Benchmark
+    public WorkdayCalendar load() throws IOException {
+        WorkdayCalendar result = new WorkdayCalendar();
+        result.load(new StringReader(HOLIDAYS));
+        return result;
+    }
+}
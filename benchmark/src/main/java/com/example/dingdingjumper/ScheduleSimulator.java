@@ -0,0 +1,418 @@
+package com.example.dingdingjumper;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * 用VirtualClock回放一段时间内的所有打卡：按AlarmPlanner登记闹钟，按DeliveryDelay模拟Doze等原因造成的
+ * 投递延迟，闹钟到达后用ClockRun走一遍打卡状态机，再登记下一个时段。
+ * 整年的回放在JVM上只需要几十毫秒，可以用来检查夏令时、时区和节假日附近的排班。
+ *
+ * 运行: ./gradlew :benchmark:simulate --args="2026 America/New_York holidays.txt"
+ */
+final class ScheduleSimulator {
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    // 打卡各阶段的模拟耗时，与真机上常见的耗时同一量级
+    private static final long LAUNCH_MILLIS = 800;
+    private static final long FOREGROUND_MILLIS = 2500;
+    private static final long VERIFY_MILLIS = 600;
+    private static final long RETURN_MILLIS = 400;
+    private static final long COOLDOWN_MILLIS = 1000;
+
+    private static final int HISTOGRAM_BUCKETS = 10;
+
+    /**
+     * 闹钟从计划触发到实际送达的延迟。
+     */
+    interface DeliveryDelay {
+        long delayMillis(long fireTime, Random random);
+    }
+
+    static DeliveryDelay noDelay() {
+        return new DeliveryDelay() {
+            @Override
+            public long delayMillis(long fireTime, Random random) {
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Doze状态下setExactAndAllowWhileIdle每个应用最多约9分钟触发一次：
+     * 按probability的概率延迟0到maxDelayMillis，其余情况只有2秒以内的正常抖动。
+     */
+    static DeliveryDelay doze(final double probability, final long maxDelayMillis) {
+        return new DeliveryDelay() {
+            @Override
+            public long delayMillis(long fireTime, Random random) {
+                if (random.nextDouble() < probability) {
+                    return (long) (random.nextDouble() * maxDelayMillis);
+                }
+                return random.nextInt(2000);
+            }
+        };
+    }
+
+    /**
+     * 回放中的一次打卡。按设置应该打卡但没有执行的时段missed为true，没有触发和打卡时间。
+     */
+    static final class Entry {
+        final String type;
+        final long scheduledTime;
+        final int jitterSeconds;
+        final long fireTime;
+        final long deliveredTime;
+        final long punchTime;
+        final boolean missed;
+        final boolean late;
+        final boolean shifted;
+
+        Entry(String type, long scheduledTime, int jitterSeconds, long fireTime, long deliveredTime,
+              long punchTime, boolean missed, boolean late, boolean shifted) {
+            this.type = type;
+            this.scheduledTime = scheduledTime;
+            this.jitterSeconds = jitterSeconds;
+            this.fireTime = fireTime;
+            this.deliveredTime = deliveredTime;
+            this.punchTime = punchTime;
+            this.missed = missed;
+            this.late = late;
+            this.shifted = shifted;
+        }
+
+        long getDeliveryDelayMillis() {
+            return deliveredTime - fireTime;
+        }
+    }
+
+    /**
+     * 回放结果：完整的触发记录和统计。
+     */
+    static final class Result {
+        final List<Entry> entries;
+        final TimeZone timeZone;
+        final int maxJitterSeconds;
+
+        Result(List<Entry> entries, TimeZone timeZone, int maxJitterSeconds) {
+            this.entries = Collections.unmodifiableList(entries);
+            this.timeZone = timeZone;
+            this.maxJitterSeconds = maxJitterSeconds;
+        }
+
+        int countPunches() {
+            return entries.size() - countMissed();
+        }
+
+        int countMissed() {
+            int count = 0;
+            for (Entry entry : entries) {
+                if (entry.missed) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        int countLate() {
+            int count = 0;
+            for (Entry entry : entries) {
+                if (entry.late) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        int countShifted() {
+            int count = 0;
+            for (Entry entry : entries) {
+                if (entry.shifted) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * 随机延迟分布，把[0, 最大随机延迟]均分为10段，统计每段的次数。
+         */
+        int[] jitterHistogram() {
+            int[] buckets = new int[HISTOGRAM_BUCKETS];
+            for (Entry entry : entries) {
+                if (entry.missed) {
+                    continue;
+                }
+                int bucket = maxJitterSeconds > 0
+                        ? entry.jitterSeconds * HISTOGRAM_BUCKETS / (maxJitterSeconds + 1) : 0;
+                buckets[Math.min(bucket, HISTOGRAM_BUCKETS - 1)]++;
+            }
+            return buckets;
+        }
+
+        /**
+         * 每行一次打卡，例如 "2026-03-09 09:00:00 -0400 上班 随机延迟37秒 投递延迟1204ms 打卡09:00:41"
+         */
+        void writeTrace(Appendable out) throws IOException {
+            SimpleDateFormat dateFormat = newFormat("yyyy-MM-dd HH:mm:ss Z", timeZone);
+            SimpleDateFormat timeFormat = newFormat("HH:mm:ss", timeZone);
+            for (Entry entry : entries) {
+                out.append(dateFormat.format(entry.scheduledTime)).append(' ').append(entry.type);
+                if (entry.missed) {
+                    out.append(" 未执行");
+                } else {
+                    out.append(" 随机延迟").append(String.valueOf(entry.jitterSeconds)).append('秒')
+                            .append(" 投递延迟").append(String.valueOf(entry.getDeliveryDelayMillis())).append("ms")
+                            .append(" 打卡").append(timeFormat.format(entry.punchTime));
+                }
+                if (entry.late) {
+                    out.append(" [迟]");
+                }
+                if (entry.shifted) {
+                    out.append(" [夏令时]");
+                }
+                out.append('\n');
+            }
+        }
+
+        String describeStats() {
+            int punches = countPunches();
+            int minJitter = Integer.MAX_VALUE;
+            int maxJitter = 0;
+            long jitterSum = 0;
+            long[] delays = new long[punches];
+            int index = 0;
+            for (Entry entry : entries) {
+                if (entry.missed) {
+                    continue;
+                }
+                minJitter = Math.min(minJitter, entry.jitterSeconds);
+                maxJitter = Math.max(maxJitter, entry.jitterSeconds);
+                jitterSum += entry.jitterSeconds;
+                delays[index++] = entry.getDeliveryDelayMillis();
+            }
+            Arrays.sort(delays);
+
+            StringBuilder builder = new StringBuilder();
+            builder.append("时段").append(entries.size())
+                    .append("，打卡").append(punches)
+                    .append("，未执行").append(countMissed())
+                    .append("，迟到").append(countLate())
+                    .append("，夏令时偏移").append(countShifted());
+            if (punches == 0) {
+                return builder.toString();
+            }
+            builder.append("\n随机延迟: 最小").append(minJitter)
+                    .append("秒，平均").append(jitterSum / punches)
+                    .append("秒，最大").append(maxJitter).append('秒');
+            builder.append("\n随机延迟分布: ").append(Arrays.toString(jitterHistogram()));
+            builder.append("\n投递延迟: p50=").append(percentile(delays, 50))
+                    .append("ms，p95=").append(percentile(delays, 95))
+                    .append("ms，最大").append(delays[delays.length - 1]).append("ms");
+            return builder.toString();
+        }
+
+        private static long percentile(long[] sorted, int percent) {
+            int index = (int) Math.ceil(sorted.length * percent / 100.0) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+    }
+
+    private final List<ScheduleSlot> slots;
+    private final ScheduleEngine engine;
+    private final TimeZone timeZone;
+    private final Random random;
+    private final AlarmPlanner planner;
+    private final int maxJitterSeconds;
+
+    private DeliveryDelay deliveryDelay = noDelay();
+    private long lateToleranceMillis = 60 * 1000L;
+
+    ScheduleSimulator(List<ScheduleSlot> slots, TimeZone timeZone, WorkdayCalendar workdayCalendar, long seed) {
+        this.slots = slots;
+        this.engine = new ScheduleEngine(slots, timeZone, workdayCalendar);
+        this.timeZone = timeZone;
+        this.random = new Random(seed);
+        this.planner = new AlarmPlanner(new JitterPlanner(new Random(seed)));
+        int max = 0;
+        for (ScheduleSlot slot : slots) {
+            max = Math.max(max, slot.jitterSeconds);
+        }
+        this.maxJitterSeconds = max;
+    }
+
+    void setDeliveryDelay(DeliveryDelay deliveryDelay) {
+        this.deliveryDelay = deliveryDelay;
+    }
+
+    /**
+     * 打卡时间晚于闹钟计划时间（含随机延迟）超过该值记为迟到，默认1分钟。
+     */
+    void setLateToleranceMillis(long lateToleranceMillis) {
+        this.lateToleranceMillis = lateToleranceMillis;
+    }
+
+    /**
+     * 回放[startTime, endTime)之间的所有打卡。
+     */
+    Result run(long startTime, long endTime) {
+        Map<String, ScheduleEngine.Fire> expected = expectedFires(startTime, endTime);
+        VirtualClock clock = new VirtualClock(startTime);
+        List<Entry> entries = new ArrayList<>();
+        ArmedAlarm armed = null;
+        long runId = 0;
+
+        while (true) {
+            long now = clock.currentTimeMillis();
+            ArmedAlarm next = planner.plan(engine, armed, now);
+            if (next == null || next.scheduledTime >= endTime) {
+                break;
+            }
+
+            armed = next;
+
+            long fireTime = armed.getFireTime();
+            clock.advanceTo(fireTime + Math.max(0, deliveryDelay.delayMillis(fireTime, random)));
+            long deliveredTime = clock.currentTimeMillis();
+
+            ClockRun run = new ClockRun(++runId, armed.type, clock);
+            run.setSchedule(armed.scheduledTime, deliveredTime, armed.jitterSeconds);
+            run.moveTo(ClockRunState.LAUNCHING);
+            clock.advanceBy(LAUNCH_MILLIS);
+            run.moveTo(ClockRunState.WAITING_FOREGROUND);
+            clock.advanceBy(FOREGROUND_MILLIS);
+            run.moveTo(ClockRunState.VERIFYING);
+            long punchTime = clock.currentTimeMillis();
+            clock.advanceBy(VERIFY_MILLIS);
+            run.moveTo(ClockRunState.RETURNING);
+            clock.advanceBy(RETURN_MILLIS);
+            run.moveTo(ClockRunState.COOLDOWN);
+            clock.advanceBy(COOLDOWN_MILLIS);
+            run.moveTo(ClockRunState.DONE);
+
+            ScheduleEngine.Fire fire = expected.remove(key(armed.scheduledTime, armed.type));
+            entries.add(new Entry(armed.type, armed.scheduledTime, armed.jitterSeconds, fireTime, deliveredTime,
+                    punchTime, false, punchTime - fireTime > lateToleranceMillis,
+                    fire != null && isShifted(fire)));
+        }
+
+        // 剩下的是按设置应该打卡、但没有登记到的时段：前一次被延迟到它之后，或者夏令时切换时被调度跳过
+        for (ScheduleEngine.Fire fire : expected.values()) {
+            entries.add(new Entry(fire.slot.type, fire.scheduledTime, 0, 0, 0, 0, true, false, isShifted(fire)));
+        }
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                return a.scheduledTime < b.scheduledTime ? -1 : (a.scheduledTime == b.scheduledTime ? 0 : 1);
+            }
+        });
+        return new Result(entries, timeZone, maxJitterSeconds);
+    }
+
+    /**
+     * 不经过ScheduleEngine，逐天逐时段列出[startTime, endTime)之间应该打卡的时间，用来核对回放结果。
+     */
+    private Map<String, ScheduleEngine.Fire> expectedFires(long startTime, long endTime) {
+        Map<String, ScheduleEngine.Fire> fires = new HashMap<>();
+        Calendar day = Calendar.getInstance(timeZone);
+        day.setTimeInMillis(startTime);
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        while (day.getTimeInMillis() < endTime) {
+            int isoDay = ScheduleEngine.isoDay(day);
+            for (ScheduleSlot slot : slots) {
+                if (!slot.isOnDay(isoDay) || !engine.isActiveOn(slot, day)) {
+                    continue;
+                }
+                Calendar fire = (Calendar) day.clone();
+                fire.set(Calendar.HOUR_OF_DAY, slot.hour);
+                fire.set(Calendar.MINUTE, slot.minute);
+                long time = fire.getTimeInMillis();
+                String key = key(time, slot.type);
+                if (time >= startTime && time < endTime && !fires.containsKey(key)) {
+                    fires.put(key, new ScheduleEngine.Fire(time, slot));
+                }
+            }
+            day.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return fires;
+    }
+
+    private static String key(long scheduledTime, String type) {
+        return scheduledTime + type;
+    }
+
+    /**
+     * 夏令时开始当天，落在被跳过的那一小时里的时段会被推后，本地时间与设置的时间不同。
+     */
+    private boolean isShifted(ScheduleEngine.Fire fire) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTimeInMillis(fire.scheduledTime);
+        return calendar.get(Calendar.HOUR_OF_DAY) != fire.slot.hour
+                || calendar.get(Calendar.MINUTE) != fire.slot.minute;
+    }
+
+    private static SimpleDateFormat newFormat(String pattern, TimeZone timeZone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+        format.setTimeZone(timeZone);
+        return format;
+    }
+
+    /**
+     * 参数: [年份] [时区] [节假日文件]，按默认设置（工作日9:00上班、18:00下班、随机延迟60秒）
+     * 和20%概率、最长9分钟的Doze延迟回放一整年，输出每次打卡和统计。
+     */
+    public static void main(String[] args) throws IOException {
+        int year = args.length > 0 ? Integer.parseInt(args[0]) : Calendar.getInstance().get(Calendar.YEAR);
+        TimeZone timeZone = args.length > 1 ? TimeZone.getTimeZone(args[1]) : TimeZone.getDefault();
+        WorkdayCalendar workdayCalendar = new WorkdayCalendar();
+        if (args.length > 2) {
+            Reader reader = new FileReader(args[2]);
+            try {
+                workdayCalendar.load(reader);
+            } finally {
+                reader.close();
+            }
+        }
+
+        List<ScheduleSlot> slots = new ArrayList<>();
+        slots.add(ScheduleSlot.onWorkdays(9, 0, "上班", 60));
+        slots.add(ScheduleSlot.onWorkdays(18, 0, "下班", 60));
+
+        Calendar start = Calendar.getInstance(timeZone);
+        start.clear();
+        start.set(year, Calendar.JANUARY, 1);
+        Calendar end = (Calendar) start.clone();
+        end.add(Calendar.YEAR, 1);
+
+        ScheduleSimulator simulator = new ScheduleSimulator(slots, timeZone, workdayCalendar, year);
+        simulator.setDeliveryDelay(doze(0.2, 9 * 60 * 1000L));
+
+        long startNanos = System.nanoTime();
+        Result result = simulator.run(start.getTimeInMillis(), end.getTimeInMillis());
+        long elapsedMillis = (System.nanoTime() - startNanos) / 1000000;
+
+        StringBuilder out = new StringBuilder();
+        result.writeTrace(out);
+        System.out.print(out);
+        System.out.println(result.describeStats());
+        System.out.println("回放" + year + "年(" + timeZone.getID() + ")耗时" + elapsedMillis + "ms，共"
+                + (end.getTimeInMillis() - start.getTimeInMillis()) / DAY_MILLIS + "天");
+    }
+}
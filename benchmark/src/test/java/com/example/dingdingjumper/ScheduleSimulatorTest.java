@@ -0,0 +1,70 @@
+package com.example.dingdingjumper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScheduleSimulatorTest {
+
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+    private static final TimeZone SHANGHAI = TimeZone.getTimeZone("Asia/Shanghai");
+
+    @Test
+    public void everySlotInsideDstGapFires() {
+        List<ScheduleSlot> slots = ScheduleSlot.parseLines("* 02:15 上班 30\n* 02:45 下班 30");
+        ScheduleSimulator.Result result = replayYear(slots, NEW_YORK, ScheduleSimulator.noDelay());
+
+        assertEquals(365 * 2, result.entries.size());
+        assertEquals(0, result.countMissed());
+        // 2026-03-08的两个时段都被推后一小时执行
+        assertEquals(2, result.countShifted());
+        assertEquals(0, result.countLate());
+    }
+
+    @Test
+    public void workdaySlotsFireOnEveryWorkday() {
+        List<ScheduleSlot> slots = new ArrayList<>();
+        slots.add(ScheduleSlot.onWorkdays(9, 0, "上班", 60));
+        slots.add(ScheduleSlot.onWorkdays(18, 0, "下班", 60));
+        ScheduleSimulator.Result result = replayYear(slots, SHANGHAI, ScheduleSimulator.noDelay());
+
+        assertEquals(new WorkdayCalendar().countWorkdays(2026) * 2, result.countPunches());
+        assertEquals(0, result.countMissed());
+        assertEquals(0, result.countShifted());
+        for (ScheduleSimulator.Entry entry : result.entries) {
+            assertTrue(entry.jitterSeconds >= 0 && entry.jitterSeconds <= 60);
+        }
+    }
+
+    @Test
+    public void dozeDelaysMakePunchesLateButNeverMissed() {
+        List<ScheduleSlot> slots = new ArrayList<>();
+        slots.add(ScheduleSlot.onWorkdays(9, 0, "上班", 60));
+        slots.add(ScheduleSlot.onWorkdays(18, 0, "下班", 60));
+        ScheduleSimulator.Result result = replayYear(slots, NEW_YORK, ScheduleSimulator.doze(0.2, 9 * 60 * 1000L));
+
+        assertEquals(0, result.countMissed());
+        assertTrue(result.countLate() > 0);
+        assertFalse(result.describeStats().isEmpty());
+    }
+
+    private static ScheduleSimulator.Result replayYear(List<ScheduleSlot> slots, TimeZone timeZone,
+                                                       ScheduleSimulator.DeliveryDelay delay) {
+        Calendar start = Calendar.getInstance(timeZone);
+        start.clear();
+        start.set(2026, Calendar.JANUARY, 1);
+        Calendar end = (Calendar) start.clone();
+        end.add(Calendar.YEAR, 1);
+
+        ScheduleSimulator simulator = new ScheduleSimulator(slots, timeZone, new WorkdayCalendar(), 2026);
+        simulator.setDeliveryDelay(delay);
+        return simulator.run(start.getTimeInMillis(), end.getTimeInMillis());
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.dingdingjumper;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无障碍事件过滤器，位于onAccessibilityEvent最前面。
+ * 只用int位掩码比较事件类型，包名用contentEquals比较，不产生任何对象分配。
+ * 没有打卡任务时activeMask为0，所有事件直接丢弃。
+ */
+final class AccessibilityEventFilter {
+
+    private final int declaredMask;
+    private final String packageName;
+
+    // 在工作线程上切换，在主线程上读取
+    private volatile int activeMask = 0;
+
+    // 在主线程上累加，在工作线程上读取
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    AccessibilityEventFilter(int declaredMask, String packageName) {
+        this.declaredMask = declaredMask;
+        this.packageName = packageName;
+    }
+
+    int getDeclaredMask() {
+        return declaredMask;
+    }
+
+    void setActive(boolean active) {
+        activeMask = active ? declaredMask : 0;
+    }
+
+    boolean isActive() {
+        return activeMask != 0;
+    }
+
+    boolean accept(int eventType, CharSequence eventPackageName) {
+        if ((eventType & activeMask) == 0
+                || eventPackageName == null
+                || !packageName.contentEquals(eventPackageName)) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        acceptedCount.incrementAndGet();
+        return true;
+    }
+
+    long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
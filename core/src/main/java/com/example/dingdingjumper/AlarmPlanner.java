@@ -0,0 +1,54 @@
+package com.example.dingdingjumper;
+
+/**
+ * 计算下一次要登记的闹钟。AlarmScheduler和ScheduleSimulator共用这部分逻辑，
+ * 当前时间由调用方传入，不读取系统时钟。
+ */
+final class AlarmPlanner {
+
+    private final JitterPlanner jitterPlanner;
+
+    AlarmPlanner(JitterPlanner jitterPlanner) {
+        this.jitterPlanner = jitterPlanner;
+    }
+
+    /**
+     * 上一次登记的打卡仍然有效时沿用，否则取now之后的下一个时段并生成随机延迟。
+     * 没有任何时段时返回null。
+     */
+    ArmedAlarm plan(ScheduleEngine engine, ArmedAlarm saved, long now) {
+        ScheduleEngine.Fire fire = engine.nextFireAfter(now);
+        ArmedAlarm alarm = keepArmedAlarm(engine, saved, fire, now);
+        if (alarm != null) {
+            return alarm;
+        }
+        if (fire == null) {
+            return null;
+        }
+        return new ArmedAlarm(fire.scheduledTime, jitterPlanner.nextOffsetSeconds(fire.slot.jitterSeconds),
+                fire.slot.type, fire.slot.workdaysOnly);
+    }
+
+    /**
+     * 已登记的打卡还没到且仍在计划中时沿用，避免打开应用时随机延迟被重新生成，
+     * 也避免基准时间已过、但加上随机延迟后还没到的那次打卡被跳过。
+     * next是now之后的下一个时段，比已登记的打卡更早时（新增了时段或系统时间往回调）重新计划。
+     */
+    private static ArmedAlarm keepArmedAlarm(ScheduleEngine engine, ArmedAlarm saved,
+                                             ScheduleEngine.Fire next, long now) {
+        if (saved == null || saved.scheduledTime <= 0 || saved.jitterSeconds < 0 || saved.type == null
+                || saved.getFireTime() <= now) {
+            return null;
+        }
+        if (next != null && next.scheduledTime < saved.scheduledTime) {
+            return null;
+        }
+
+        ScheduleEngine.Fire fire = engine.nextFireAfter(saved.scheduledTime - 1);
+        if (fire == null || fire.scheduledTime != saved.scheduledTime
+                || !fire.slot.type.equals(saved.type) || saved.jitterSeconds > fire.slot.jitterSeconds) {
+            return null;
+        }
+        return new ArmedAlarm(saved.scheduledTime, saved.jitterSeconds, saved.type, fire.slot.workdaysOnly);
+    }
+}
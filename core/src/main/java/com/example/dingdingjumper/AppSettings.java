@@ -0,0 +1,136 @@
+package com.example.dingdingjumper;
+
+/**
+ * 应用设置的不可变快照。修改时通过Builder生成新的快照，再交给SettingsStore整体替换，
+ * 读取方拿到的快照不会被其他线程改动。
+ */
+final class AppSettings {
+
+    final int checkInHour;
+    final int checkInMinute;
+    final int checkOutHour;
+    final int checkOutMinute;
+    final boolean alarmEnabled;
+    final int delaySeconds;
+    final String extraSlots;
+    final boolean workdaysOnly;
+    final boolean eventDrivenReturn;
+    final String gestureScript;
+    final ReturnStrategy returnStrategy;
+
+    private AppSettings(Builder builder) {
+        checkInHour = builder.checkInHour;
+        checkInMinute = builder.checkInMinute;
+        checkOutHour = builder.checkOutHour;
+        checkOutMinute = builder.checkOutMinute;
+        alarmEnabled = builder.alarmEnabled;
+        delaySeconds = builder.delaySeconds;
+        extraSlots = builder.extraSlots;
+        workdaysOnly = builder.workdaysOnly;
+        eventDrivenReturn = builder.eventDrivenReturn;
+        gestureScript = builder.gestureScript;
+        returnStrategy = builder.returnStrategy;
+    }
+
+    Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    boolean sameAs(AppSettings other) {
+        return other != null
+                && checkInHour == other.checkInHour
+                && checkInMinute == other.checkInMinute
+                && checkOutHour == other.checkOutHour
+                && checkOutMinute == other.checkOutMinute
+                && alarmEnabled == other.alarmEnabled
+                && delaySeconds == other.delaySeconds
+                && extraSlots.equals(other.extraSlots)
+                && workdaysOnly == other.workdaysOnly
+                && eventDrivenReturn == other.eventDrivenReturn
+                && gestureScript.equals(other.gestureScript)
+                && returnStrategy == other.returnStrategy;
+    }
+
+    static final class Builder {
+        // 默认值与旧版本SharedPreferences中的默认值保持一致
+        private int checkInHour = 9;
+        private int checkInMinute = 0;
+        private int checkOutHour = 18;
+        private int checkOutMinute = 0;
+        private boolean alarmEnabled = false;
+        private int delaySeconds = 60;
+        private String extraSlots = "";
+        private boolean workdaysOnly = true;
+        private boolean eventDrivenReturn = true;
+        private String gestureScript = "";
+        private ReturnStrategy returnStrategy = ReturnStrategy.HOME;
+
+        Builder() {
+        }
+
+        private Builder(AppSettings settings) {
+            checkInHour = settings.checkInHour;
+            checkInMinute = settings.checkInMinute;
+            checkOutHour = settings.checkOutHour;
+            checkOutMinute = settings.checkOutMinute;
+            alarmEnabled = settings.alarmEnabled;
+            delaySeconds = settings.delaySeconds;
+            extraSlots = settings.extraSlots;
+            workdaysOnly = settings.workdaysOnly;
+            eventDrivenReturn = settings.eventDrivenReturn;
+            gestureScript = settings.gestureScript;
+            returnStrategy = settings.returnStrategy;
+        }
+
+        Builder setCheckInTime(int hour, int minute) {
+            checkInHour = hour;
+            checkInMinute = minute;
+            return this;
+        }
+
+        Builder setCheckOutTime(int hour, int minute) {
+            checkOutHour = hour;
+            checkOutMinute = minute;
+            return this;
+        }
+
+        Builder setAlarmEnabled(boolean alarmEnabled) {
+            this.alarmEnabled = alarmEnabled;
+            return this;
+        }
+
+        Builder setDelaySeconds(int delaySeconds) {
+            this.delaySeconds = delaySeconds;
+            return this;
+        }
+
+        Builder setExtraSlots(String extraSlots) {
+            this.extraSlots = extraSlots == null ? "" : extraSlots;
+            return this;
+        }
+
+        Builder setWorkdaysOnly(boolean workdaysOnly) {
+            this.workdaysOnly = workdaysOnly;
+            return this;
+        }
+
+        Builder setEventDrivenReturn(boolean eventDrivenReturn) {
+            this.eventDrivenReturn = eventDrivenReturn;
+            return this;
+        }
+
+        Builder setGestureScript(String gestureScript) {
+            this.gestureScript = gestureScript == null ? "" : gestureScript;
+            return this;
+        }
+
+        Builder setReturnStrategy(ReturnStrategy returnStrategy) {
+            this.returnStrategy = returnStrategy == null ? ReturnStrategy.HOME : returnStrategy;
+            return this;
+        }
+
+        AppSettings build() {
+            return new AppSettings(this);
+        }
+    }
+}
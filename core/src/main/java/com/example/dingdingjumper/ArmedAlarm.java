@@ -0,0 +1,28 @@
+package com.example.dingdingjumper;
+
+/**
+ * 已登记的一次打卡，包含随机延迟。
+ */
+final class ArmedAlarm {
+    final long scheduledTime;
+    final int jitterSeconds;
+    final String type;
+    final boolean workdaysOnly;
+
+    ArmedAlarm(long scheduledTime, int jitterSeconds, String type, boolean workdaysOnly) {
+        this.scheduledTime = scheduledTime;
+        this.jitterSeconds = jitterSeconds;
+        this.type = type;
+        this.workdaysOnly = workdaysOnly;
+    }
+
+    long getFireTime() {
+        return scheduledTime + jitterSeconds * 1000L;
+    }
+
+    boolean sameAs(ArmedAlarm other) {
+        return other != null && scheduledTime == other.scheduledTime
+                && jitterSeconds == other.jitterSeconds && type.equals(other.type)
+                && workdaysOnly == other.workdaysOnly;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.dingdingjumper;
+
+/**
+ * 发给无障碍服务的一次打卡指令。闹钟触发的正式打卡带有计划时间、触发时间和随机延迟；
+ * 测试打卡只带最大随机延迟，由服务自己决定实际延迟。
+ * issuedAtNanos为发出指令时的开机时间，用于统计指令送达服务的耗时。
+ */
+final class ClockCommand {
+
+    final long runId;
+    final String type;
+    final boolean isTest;
+    final int maxDelaySeconds;
+    final long scheduledTime;
+    final long fireTime;
+    final int jitterSeconds;
+    final long issuedAtNanos;
+
+    ClockCommand(long runId, String type, boolean isTest, int maxDelaySeconds, long scheduledTime,
+                 long fireTime, int jitterSeconds, long issuedAtNanos) {
+        this.runId = runId;
+        this.type = type;
+        this.isTest = isTest;
+        this.maxDelaySeconds = maxDelaySeconds;
+        this.scheduledTime = scheduledTime;
+        this.fireTime = fireTime;
+        this.jitterSeconds = jitterSeconds;
+        this.issuedAtNanos = issuedAtNanos;
+    }
+
+    /**
+     * 闹钟触发的打卡，随机延迟已经计入闹钟时间，服务收到后立即执行。
+     */
+    static ClockCommand forAlarm(long runId, String type, long scheduledTime, long fireTime, int jitterSeconds,
+                                 long issuedAtNanos) {
+        return new ClockCommand(runId, type, false, 0, scheduledTime, fireTime, jitterSeconds, issuedAtNanos);
+    }
+
+    /**
+     * 测试打卡，服务在0到maxDelaySeconds秒之间随机延迟后执行。
+     */
+    static ClockCommand forTest(String type, int maxDelaySeconds, long issuedAtNanos) {
+        return new ClockCommand(ClockRunIds.NO_RUN, type, true, maxDelaySeconds, 0, 0, 0, issuedAtNanos);
+    }
+
+    boolean hasSchedule() {
+        return scheduledTime > 0;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.dingdingjumper;
+
+import java.util.ArrayDeque;
+
+/**
+ * 打卡请求队列，同一时间只执行一个任务。正式打卡排在测试之前；
+ * 与正在执行或已在排队的同类型请求合并，不会重复打卡。只依赖TimeSource，可以在JVM上测试。
+ * 只在一个线程上使用，不是线程安全的。
+ */
+final class ClockRequestQueue {
+
+    enum Offer {
+        /** 已加入队列 */
+        QUEUED,
+        /** 与正在执行或已在排队的同类型请求合并，本请求不会执行 */
+        COALESCED
+    }
+
+    static final class Request {
+        final ClockRun run;
+        final boolean test;
+        final long enqueuedAtNanos;
+
+        Request(ClockRun run, boolean test, long enqueuedAtNanos) {
+            this.run = run;
+            this.test = test;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+
+    private final TimeSource timeSource;
+    private final ArrayDeque<Request> realRequests = new ArrayDeque<>();
+    private final ArrayDeque<Request> testRequests = new ArrayDeque<>();
+    private Request active;
+
+    private int offeredCount;
+    private int coalescedCount;
+    private int startedCount;
+    private int maxDepth;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    ClockRequestQueue(TimeSource timeSource) {
+        this.timeSource = timeSource;
+    }
+
+    Offer offer(ClockRun run, boolean test) {
+        offeredCount++;
+        if (isSameRequest(active, run, test) || contains(test ? testRequests : realRequests, run)) {
+            coalescedCount++;
+            return Offer.COALESCED;
+        }
+
+        (test ? testRequests : realRequests).add(new Request(run, test, timeSource.elapsedRealtimeNanos()));
+        maxDepth = Math.max(maxDepth, getDepth());
+        return Offer.QUEUED;
+    }
+
+    /**
+     * 没有任务在执行时取出下一个请求并标记为正在执行，否则返回null。
+     */
+    Request startNext() {
+        if (active != null) {
+            return null;
+        }
+        Request next = realRequests.poll();
+        if (next == null) {
+            next = testRequests.poll();
+        }
+        if (next == null) {
+            return null;
+        }
+
+        long waitNanos = timeSource.elapsedRealtimeNanos() - next.enqueuedAtNanos;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        startedCount++;
+        active = next;
+        return next;
+    }
+
+    /**
+     * 当前任务结束。
+     */
+    void complete() {
+        active = null;
+    }
+
+    Request getActive() {
+        return active;
+    }
+
+    /**
+     * 正在执行的是测试且有正式打卡在排队，此时应中断测试。
+     */
+    boolean shouldPreemptActive() {
+        return active != null && active.test && !realRequests.isEmpty();
+    }
+
+    int getDepth() {
+        return realRequests.size() + testRequests.size();
+    }
+
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    int getOfferedCount() {
+        return offeredCount;
+    }
+
+    int getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    long getAverageWaitNanos() {
+        return startedCount == 0 ? 0 : totalWaitNanos / startedCount;
+    }
+
+    long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    String describeMetrics() {
+        return "排队" + getDepth() + "（最多" + maxDepth + "），请求" + offeredCount + "次，合并" + coalescedCount
+                + "次，平均等待" + getAverageWaitNanos() / 1000000 + "ms，最长等待" + maxWaitNanos / 1000000 + "ms";
+    }
+
+    private static boolean contains(ArrayDeque<Request> requests, ClockRun run) {
+        for (Request request : requests) {
+            if (request.run.getType().equals(run.getType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameRequest(Request request, ClockRun run, boolean test) {
+        return request != null && request.test == test && request.run.getType().equals(run.getType());
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.dingdingjumper;
+
+import java.util.Arrays;
+
+/**
+ * 一次打卡任务的状态机。每次状态切换都记录进入时间，任务结束后可以得到各阶段耗时。
+ * 只依赖TimeSource，可以在JVM上用假时钟驱动。
+ */
+final class ClockRun {
+
+    private static final ClockRunState[] STATES = ClockRunState.values();
+
+    private final long runId;
+    private final String type;
+    private final TimeSource timeSource;
+
+    private long scheduledTime;
+    private long fireTime;
+    private int jitterSeconds;
+
+    private final long[] enteredAtNanos = new long[STATES.length];
+    private ClockRunState state = ClockRunState.IDLE;
+    private ClockRunState failedFrom;
+    private String failureReason;
+    private PunchVerification verification = PunchVerification.UNKNOWN;
+    private boolean recovered;
+
+    ClockRun(long runId, String type, TimeSource timeSource) {
+        this.runId = runId;
+        this.type = type;
+        this.timeSource = timeSource;
+        Arrays.fill(enteredAtNanos, -1);
+        enteredAtNanos[ClockRunState.IDLE.ordinal()] = timeSource.elapsedRealtimeNanos();
+    }
+
+    long getRunId() {
+        return runId;
+    }
+
+    String getType() {
+        return type;
+    }
+
+    /**
+     * 记录计划时间（不含随机延迟）、实际触发时间和随机延迟，写入日志用。
+     */
+    void setSchedule(long scheduledTime, long fireTime, int jitterSeconds) {
+        this.scheduledTime = scheduledTime;
+        this.fireTime = fireTime;
+        this.jitterSeconds = jitterSeconds;
+    }
+
+    long getScheduledTime() {
+        return scheduledTime;
+    }
+
+    long getFireTime() {
+        return fireTime;
+    }
+
+    int getJitterSeconds() {
+        return jitterSeconds;
+    }
+
+    ClockRunState getState() {
+        return state;
+    }
+
+    /**
+     * 任务是否进入过某个阶段。
+     */
+    boolean hasReached(ClockRunState step) {
+        return enteredAtNanos[step.ordinal()] >= 0;
+    }
+
+    boolean isFinished() {
+        return state.isTerminal();
+    }
+
+    String getFailureReason() {
+        return failureReason;
+    }
+
+    /**
+     * 在钉钉界面上核对到的打卡结果，没有核对过为UNKNOWN。
+     */
+    PunchVerification getVerification() {
+        return verification;
+    }
+
+    void setVerification(PunchVerification verification) {
+        this.verification = verification;
+    }
+
+    /**
+     * 进程被杀后从PendingRunStore恢复的任务。
+     */
+    boolean isRecovered() {
+        return recovered;
+    }
+
+    void markRecovered() {
+        recovered = true;
+    }
+
+    void moveTo(ClockRunState next) {
+        if (!state.canMoveTo(next)) {
+            throw new IllegalStateException("非法的状态切换: " + state + " -> " + next);
+        }
+        if (next == ClockRunState.FAILED) {
+            failedFrom = state;
+        }
+        state = next;
+        enteredAtNanos[next.ordinal()] = timeSource.elapsedRealtimeNanos();
+    }
+
+    void fail(String reason) {
+        failureReason = reason;
+        moveTo(ClockRunState.FAILED);
+    }
+
+    /**
+     * 任务在某个阶段停留的时间，没有经过该阶段返回-1。
+     * 进行中的阶段按当前时间计算。
+     */
+    long getStepNanos(ClockRunState step) {
+        long enteredAt = enteredAtNanos[step.ordinal()];
+        if (enteredAt < 0 || step.isTerminal()) {
+            return -1;
+        }
+        long leftAt = -1;
+        for (int i = step.ordinal() + 1; i < STATES.length; i++) {
+            if (enteredAtNanos[i] >= 0) {
+                leftAt = enteredAtNanos[i];
+                break;
+            }
+        }
+        return (leftAt >= 0 ? leftAt : timeSource.elapsedRealtimeNanos()) - enteredAt;
+    }
+
+    /**
+     * 从进入某个阶段到现在经过的时间，没有经过该阶段返回-1。
+     */
+    long getNanosSince(ClockRunState step) {
+        long enteredAt = enteredAtNanos[step.ordinal()];
+        return enteredAt < 0 ? -1 : timeSource.elapsedRealtimeNanos() - enteredAt;
+    }
+
+    long getTotalNanos() {
+        long end = state.isTerminal() ? enteredAtNanos[state.ordinal()] : timeSource.elapsedRealtimeNanos();
+        return end - enteredAtNanos[ClockRunState.IDLE.ordinal()];
+    }
+
+    /**
+     * 各阶段耗时明细，例如 "LAUNCHING=85ms, WAITING_FOREGROUND=1203ms, ..."
+     */
+    String describeLatencies() {
+        StringBuilder builder = new StringBuilder();
+        for (ClockRunState step : STATES) {
+            long nanos = getStepNanos(step);
+            if (step == ClockRunState.IDLE || nanos < 0) {
+                continue;
+            }
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(step).append('=').append(nanos / 1000000).append("ms");
+        }
+        if (builder.length() > 0) {
+            builder.append(", ");
+        }
+        builder.append("总计=").append(getTotalNanos() / 1000000).append("ms");
+        if (state == ClockRunState.FAILED) {
+            builder.append("，失败于").append(failedFrom);
+            if (failureReason != null) {
+                builder.append(": ").append(failureReason);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.dingdingjumper;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 打卡任务ID生成器。ID取当前毫秒时间戳，同一毫秒内递增，保证进程内唯一且可读。
+ */
+final class ClockRunIds {
+
+    static final long NO_RUN = 0;
+
+    private static final AtomicLong lastId = new AtomicLong(NO_RUN);
+
+    private ClockRunIds() {
+    }
+
+    static long next() {
+        while (true) {
+            long last = lastId.get();
+            long next = Math.max(System.currentTimeMillis(), last + 1);
+            if (lastId.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.dingdingjumper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 打卡任务日志。固定大小的内存映射环形文件，每条记录64字节，写满后覆盖最旧的记录。
+ * 写入只是内存拷贝，由内核负责落盘，不会阻塞调用线程。
+ *
+ * 文件头：magic(4) version(4) recordSize(4) capacity(4) 写入总数(8)
+ * 记录：序号(8) runId(8) 计划时间(8) 实际触发时间(8) 随机延迟秒数(4)
+ *       类型(1) 结果(1) 标志(2) 各阶段耗时毫秒(5 x 4) 保留(4)
+ */
+final class ClockRunJournal {
+
+    static final String FILE_NAME = "clock_runs.journal";
+    static final int DEFAULT_CAPACITY = 4096; // 每天4条记录可保存两年以上
+
+    static final byte TYPE_OTHER = 0;
+    static final byte TYPE_CHECK_IN = 1;
+    static final byte TYPE_CHECK_OUT = 2;
+    static final byte TYPE_TEST = 3;
+
+    static final byte OUTCOME_DONE = 1;
+    static final byte OUTCOME_FAILED = 2;
+
+    // 记录标志位
+    static final short FLAG_VERIFIED = 0x1; // 钉钉界面上确认打卡成功
+    static final short FLAG_VERIFY_FAILED = 0x2; // 钉钉界面上显示打卡失败
+    static final short FLAG_RECOVERED = 0x4; // 进程被杀后恢复执行的任务
+
+    // 记录耗时的阶段，与ClockRunState中的顺序一致
+    static final ClockRunState[] STEPS = {
+            ClockRunState.LAUNCHING,
+            ClockRunState.WAITING_FOREGROUND,
+            ClockRunState.VERIFYING,
+            ClockRunState.RETURNING,
+            ClockRunState.COOLDOWN
+    };
+
+    private static final int MAGIC = 0x44444A52; // "DDJR"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 64;
+    private static final int HEADER_COUNT_OFFSET = 16;
+
+    private static final int OFFSET_SEQUENCE = 0;
+    private static final int OFFSET_RUN_ID = 8;
+    private static final int OFFSET_SCHEDULED_TIME = 16;
+    private static final int OFFSET_FIRE_TIME = 24;
+    private static final int OFFSET_JITTER = 32;
+    private static final int OFFSET_TYPE = 36;
+    private static final int OFFSET_OUTCOME = 37;
+    private static final int OFFSET_FLAGS = 38;
+    private static final int OFFSET_STEPS = 40;
+
+    private static ClockRunJournal instance;
+
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private long count;
+
+    static synchronized ClockRunJournal getInstance(File filesDir) throws IOException {
+        if (instance == null) {
+            instance = open(new File(filesDir, FILE_NAME), DEFAULT_CAPACITY);
+        }
+        return instance;
+    }
+
+    static ClockRunJournal open(File file, int capacity) throws IOException {
+        long size = HEADER_SIZE + (long) RECORD_SIZE * capacity;
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new ClockRunJournal(buffer, capacity);
+        } finally {
+            // 映射建立后关闭文件不影响映射
+            randomAccessFile.close();
+        }
+    }
+
+    private ClockRunJournal(MappedByteBuffer buffer, int capacity) {
+        this.buffer = buffer;
+        this.capacity = capacity;
+
+        if (buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != VERSION
+                || buffer.getInt(8) != RECORD_SIZE
+                || buffer.getInt(12) != capacity) {
+            // 新文件或格式不兼容，重新初始化
+            for (int i = 0; i < HEADER_SIZE; i += 8) {
+                buffer.putLong(i, 0);
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, RECORD_SIZE);
+            buffer.putInt(12, capacity);
+            buffer.putLong(HEADER_COUNT_OFFSET, 0);
+        }
+        count = buffer.getLong(HEADER_COUNT_OFFSET);
+    }
+
+    private static short flags(ClockRun run) {
+        short flags = run.isRecovered() ? FLAG_RECOVERED : 0;
+        switch (run.getVerification()) {
+            case VERIFIED:
+                return (short) (flags | FLAG_VERIFIED);
+            case FAILED:
+                return (short) (flags | FLAG_VERIFY_FAILED);
+            default:
+                return flags;
+        }
+    }
+
+    synchronized void append(ClockRun run) {
+        byte outcome = run.getState() == ClockRunState.DONE ? OUTCOME_DONE : OUTCOME_FAILED;
+        int position = HEADER_SIZE + (int) (count % capacity) * RECORD_SIZE;
+
+        // 先写入无效序号，记录写完后再写入真实序号，读取时据此跳过写了一半的记录
+        buffer.putLong(position + OFFSET_SEQUENCE, -1);
+        buffer.putLong(position + OFFSET_RUN_ID, run.getRunId());
+        buffer.putLong(position + OFFSET_SCHEDULED_TIME, run.getScheduledTime());
+        buffer.putLong(position + OFFSET_FIRE_TIME, run.getFireTime());
+        buffer.putInt(position + OFFSET_JITTER, run.getJitterSeconds());
+        buffer.put(position + OFFSET_TYPE, typeCode(run.getType()));
+        buffer.put(position + OFFSET_OUTCOME, outcome);
+        buffer.putShort(position + OFFSET_FLAGS, flags(run));
+        for (int i = 0; i < STEPS.length; i++) {
+            long nanos = run.getStepNanos(STEPS[i]);
+            buffer.putInt(position + OFFSET_STEPS + i * 4, nanos < 0 ? -1 : (int) (nanos / 1000000));
+        }
+        buffer.putLong(position + OFFSET_SEQUENCE, count);
+
+        count++;
+        buffer.putLong(HEADER_COUNT_OFFSET, count);
+    }
+
+    synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * 从最旧到最新逐条读取，不会一次性加载整个文件。
+     */
+    synchronized Cursor openCursor() {
+        return new Cursor(Math.max(0, count - capacity), count);
+    }
+
+    /**
+     * 日志中是否已有该任务的记录，恢复待执行打卡前用来排除已经结束的任务。
+     */
+    synchronized boolean containsRun(long runId) {
+        Cursor cursor = openCursor();
+        while (cursor.moveToNext()) {
+            if (cursor.getRunId() == runId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static byte typeCode(String type) {
+        if ("上班".equals(type)) {
+            return TYPE_CHECK_IN;
+        } else if ("下班".equals(type)) {
+            return TYPE_CHECK_OUT;
+        } else if ("test".equals(type)) {
+            return TYPE_TEST;
+        }
+        return TYPE_OTHER;
+    }
+
+    static String typeName(byte code) {
+        switch (code) {
+            case TYPE_CHECK_IN:
+                return "上班";
+            case TYPE_CHECK_OUT:
+                return "下班";
+            case TYPE_TEST:
+                return "test";
+            default:
+                return "未知";
+        }
+    }
+
+    /**
+     * 日志游标，moveToNext()成功后通过getter读取当前记录，不分配对象。
+     */
+    final class Cursor {
+        private long next;
+        private final long end;
+        private int position = -1;
+
+        private Cursor(long start, long end) {
+            this.next = start;
+            this.end = end;
+        }
+
+        boolean moveToNext() {
+            synchronized (ClockRunJournal.this) {
+                // 读取期间被新记录覆盖的位置直接跳过
+                next = Math.max(next, count - capacity);
+                while (next < end) {
+                    long sequence = next++;
+                    int candidate = HEADER_SIZE + (int) (sequence % capacity) * RECORD_SIZE;
+                    if (buffer.getLong(candidate + OFFSET_SEQUENCE) == sequence) {
+                        position = candidate;
+                        return true;
+                    }
+                }
+                position = -1;
+                return false;
+            }
+        }
+
+        long getSequence() {
+            return buffer.getLong(position + OFFSET_SEQUENCE);
+        }
+
+        long getRunId() {
+            return buffer.getLong(position + OFFSET_RUN_ID);
+        }
+
+        long getScheduledTime() {
+            return buffer.getLong(position + OFFSET_SCHEDULED_TIME);
+        }
+
+        long getFireTime() {
+            return buffer.getLong(position + OFFSET_FIRE_TIME);
+        }
+
+        int getJitterSeconds() {
+            return buffer.getInt(position + OFFSET_JITTER);
+        }
+
+        byte getType() {
+            return buffer.get(position + OFFSET_TYPE);
+        }
+
+        byte getOutcome() {
+            return buffer.get(position + OFFSET_OUTCOME);
+        }
+
+        short getFlags() {
+            return buffer.getShort(position + OFFSET_FLAGS);
+        }
+
+        /**
+         * 第index个阶段（见STEPS）的耗时毫秒，未经过该阶段为-1。
+         */
+        int getStepMillis(int index) {
+            return buffer.getInt(position + OFFSET_STEPS + index * 4);
+        }
+    }
+}
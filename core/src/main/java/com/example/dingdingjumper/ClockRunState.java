@@ -0,0 +1,42 @@
+package com.example.dingdingjumper;
+
+/**
+ * 一次打卡任务的各个阶段，DONE和FAILED为终止状态。
+ */
+enum ClockRunState {
+    IDLE,
+    LAUNCHING,
+    WAITING_FOREGROUND,
+    VERIFYING,
+    RETURNING,
+    COOLDOWN,
+    DONE,
+    FAILED;
+
+    boolean isTerminal() {
+        return this == DONE || this == FAILED;
+    }
+
+    boolean canMoveTo(ClockRunState next) {
+        if (next == FAILED) {
+            return !isTerminal();
+        }
+        switch (this) {
+            case IDLE:
+                return next == LAUNCHING;
+            case LAUNCHING:
+                return next == WAITING_FOREGROUND;
+            case WAITING_FOREGROUND:
+                // 等待超时可以跳过验证直接返回
+                return next == VERIFYING || next == RETURNING;
+            case VERIFYING:
+                return next == RETURNING;
+            case RETURNING:
+                return next == COOLDOWN;
+            case COOLDOWN:
+                return next == DONE;
+            default:
+                return false;
+        }
+    }
+}
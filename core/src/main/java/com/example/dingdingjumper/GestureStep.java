@@ -0,0 +1,185 @@
+package com.example.dingdingjumper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 操作脚本中的一步。脚本每行一步，格式如下（坐标是相对屏幕宽高的比例，0到1）：
+ * <pre>
+ * click text 考勤打卡        点击包含该文字的控件
+ * click id com.alibaba.android.rimet:id/xxx   点击该ID的控件
+ * tap 0.5 0.85               点击屏幕位置
+ * swipe 0.5 0.8 0.5 0.3 300  从一点滑动到另一点，最后一个数字是时长毫秒，可省略
+ * wait window 3000           等待窗口切换，最多3000毫秒
+ * wait content 2000          等待界面内容变化，最多2000毫秒
+ * </pre>
+ * 查找控件的步骤找不到时会等待界面变化后重试，直到超时（默认见DEFAULT_FIND_TIMEOUT_MS）。
+ * 空行和#开头的行被忽略。
+ */
+final class GestureStep {
+
+    enum Kind {
+        CLICK_TEXT,
+        CLICK_ID,
+        TAP,
+        SWIPE,
+        WAIT_WINDOW,
+        WAIT_CONTENT
+    }
+
+    static final long DEFAULT_FIND_TIMEOUT_MS = 3000;
+    static final long DEFAULT_SWIPE_DURATION_MS = 300;
+    static final long TAP_DURATION_MS = 50;
+
+    final Kind kind;
+    final String target;
+    final float x1;
+    final float y1;
+    final float x2;
+    final float y2;
+    final long durationMs;
+
+    private GestureStep(Kind kind, String target, float x1, float y1, float x2, float y2, long durationMs) {
+        this.kind = kind;
+        this.target = target;
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+        this.durationMs = durationMs;
+    }
+
+    static GestureStep clickText(String text) {
+        return new GestureStep(Kind.CLICK_TEXT, text, 0, 0, 0, 0, DEFAULT_FIND_TIMEOUT_MS);
+    }
+
+    static GestureStep clickId(String viewId) {
+        return new GestureStep(Kind.CLICK_ID, viewId, 0, 0, 0, 0, DEFAULT_FIND_TIMEOUT_MS);
+    }
+
+    static GestureStep tap(float x, float y) {
+        checkPoint(x, y);
+        return new GestureStep(Kind.TAP, null, x, y, x, y, TAP_DURATION_MS);
+    }
+
+    static GestureStep swipe(float x1, float y1, float x2, float y2, long durationMs) {
+        checkPoint(x1, y1);
+        checkPoint(x2, y2);
+        if (durationMs <= 0) {
+            throw new IllegalArgumentException("滑动时长必须大于0");
+        }
+        return new GestureStep(Kind.SWIPE, null, x1, y1, x2, y2, durationMs);
+    }
+
+    static GestureStep waitWindow(long timeoutMs) {
+        return new GestureStep(Kind.WAIT_WINDOW, null, 0, 0, 0, 0, checkTimeout(timeoutMs));
+    }
+
+    static GestureStep waitContent(long timeoutMs) {
+        return new GestureStep(Kind.WAIT_CONTENT, null, 0, 0, 0, 0, checkTimeout(timeoutMs));
+    }
+
+    /**
+     * 点击和滑动直接由手势完成，可以和相邻的手势步骤合并成一次dispatchGesture。
+     */
+    boolean isStroke() {
+        return kind == Kind.TAP || kind == Kind.SWIPE;
+    }
+
+    boolean isWait() {
+        return kind == Kind.WAIT_WINDOW || kind == Kind.WAIT_CONTENT;
+    }
+
+    static List<GestureStep> parseLines(String text) {
+        List<GestureStep> steps = new ArrayList<>();
+        if (text == null) {
+            return steps;
+        }
+        String[] lines = text.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                steps.add(parseLine(line));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("第" + (i + 1) + "行格式错误: " + line, e);
+            }
+        }
+        return steps;
+    }
+
+    static GestureStep parseLine(String line) {
+        String[] parts = line.trim().split("\\s+");
+        switch (parts[0]) {
+            case "click":
+                if (parts.length < 3) {
+                    throw new IllegalArgumentException("click需要text或id以及目标");
+                }
+                // 文字中可能有空格，第二个字段之后的全部内容都是目标
+                String target = line.trim().split("\\s+", 3)[2];
+                if ("text".equals(parts[1])) {
+                    return clickText(target);
+                } else if ("id".equals(parts[1])) {
+                    return clickId(target);
+                }
+                throw new IllegalArgumentException("click只支持text或id");
+            case "tap":
+                checkFieldCount(parts, 3, 3);
+                return tap(Float.parseFloat(parts[1]), Float.parseFloat(parts[2]));
+            case "swipe":
+                checkFieldCount(parts, 5, 6);
+                return swipe(Float.parseFloat(parts[1]), Float.parseFloat(parts[2]),
+                        Float.parseFloat(parts[3]), Float.parseFloat(parts[4]),
+                        parts.length == 6 ? Long.parseLong(parts[5]) : DEFAULT_SWIPE_DURATION_MS);
+            case "wait":
+                checkFieldCount(parts, 3, 3);
+                if ("window".equals(parts[1])) {
+                    return waitWindow(Long.parseLong(parts[2]));
+                } else if ("content".equals(parts[1])) {
+                    return waitContent(Long.parseLong(parts[2]));
+                }
+                throw new IllegalArgumentException("wait只支持window或content");
+            default:
+                throw new IllegalArgumentException("未知的步骤: " + parts[0]);
+        }
+    }
+
+    private static void checkFieldCount(String[] parts, int min, int max) {
+        if (parts.length < min || parts.length > max) {
+            throw new IllegalArgumentException("字段数量错误");
+        }
+    }
+
+    private static void checkPoint(float x, float y) {
+        if (x < 0 || x > 1 || y < 0 || y > 1) {
+            throw new IllegalArgumentException("坐标必须在0到1之间: " + x + "," + y);
+        }
+    }
+
+    private static long checkTimeout(long timeoutMs) {
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("等待时间必须大于0");
+        }
+        return timeoutMs;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case CLICK_TEXT:
+                return "click text " + target;
+            case CLICK_ID:
+                return "click id " + target;
+            case TAP:
+                return "tap " + x1 + " " + y1;
+            case SWIPE:
+                return "swipe " + x1 + " " + y1 + " " + x2 + " " + y2 + " " + durationMs;
+            case WAIT_WINDOW:
+                return "wait window " + durationMs;
+            default:
+                return "wait content " + durationMs;
+        }
+    }
+}
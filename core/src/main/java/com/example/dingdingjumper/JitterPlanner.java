@@ -0,0 +1,20 @@
+package com.example.dingdingjumper;
+
+import java.util.Random;
+
+/**
+ * 随机延迟计划。延迟在设置闹钟时就确定并计入闹钟时间，
+ * 同一次打卡重复设置闹钟时由AlarmScheduler沿用已保存的值，保证计划时间稳定。
+ */
+final class JitterPlanner {
+
+    private final Random random;
+
+    JitterPlanner(Random random) {
+        this.random = random;
+    }
+
+    int nextOffsetSeconds(int maxDelaySeconds) {
+        return maxDelaySeconds > 0 ? random.nextInt(maxDelaySeconds + 1) : 0;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.dingdingjumper;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 本机上钉钉从启动到窗口出现在前台的耗时估计，冷启动和热启动分开统计。
+ * 每种启动方式用一个按几何级数分桶的直方图记录耗时，每次记录前把已有权重乘以DECAY，
+ * 最近十几次打卡占主要权重，手机或钉钉版本变化后几天内就能跟上。
+ * 查询分位数时取所在桶的上界，结果偏保守。
+ */
+final class LaunchTimingEstimator {
+
+    enum Start {
+        COLD,
+        WARM
+    }
+
+    // 距离上次启动钉钉不超过30分钟时认为钉钉进程还在，按热启动统计
+    static final long WARM_WINDOW_MILLIS = 30 * 60 * 1000L;
+
+    // 样本少于该数量时不给出估计，由调用方使用默认值
+    static final int MIN_SAMPLES = 5;
+
+    private static final double DECAY = 0.9;
+
+    // 桶上界从250ms开始每次乘1.15，最后一个桶收纳60秒以上的所有耗时
+    private static final long[] BUCKET_BOUNDS;
+
+    static {
+        long[] bounds = new long[64];
+        int count = 0;
+        double bound = 250;
+        while (bound < 60000) {
+            bounds[count++] = (long) bound;
+            bound *= 1.15;
+        }
+        bounds[count++] = Long.MAX_VALUE;
+        BUCKET_BOUNDS = Arrays.copyOf(bounds, count);
+    }
+
+    private final double[][] weights = new double[Start.values().length][BUCKET_BOUNDS.length];
+    private final int[] sampleCounts = new int[Start.values().length];
+    private long lastLaunchTime;
+
+    /**
+     * 按上一次启动钉钉的时间判断本次是冷启动还是热启动。
+     */
+    Start classify(long launchTime) {
+        return lastLaunchTime > 0 && launchTime - lastLaunchTime >= 0
+                && launchTime - lastLaunchTime <= WARM_WINDOW_MILLIS ? Start.WARM : Start.COLD;
+    }
+
+    void markLaunched(long launchTime) {
+        lastLaunchTime = launchTime;
+    }
+
+    void record(Start start, long readyMillis) {
+        double[] bucketWeights = weights[start.ordinal()];
+        for (int i = 0; i < bucketWeights.length; i++) {
+            bucketWeights[i] *= DECAY;
+        }
+        bucketWeights[bucketFor(readyMillis)] += 1;
+        sampleCounts[start.ordinal()]++;
+    }
+
+    int getSampleCount(Start start) {
+        return sampleCounts[start.ordinal()];
+    }
+
+    /**
+     * 耗时的quantile分位数（0到1之间），样本不足时返回-1。
+     */
+    long quantile(Start start, double quantile) {
+        if (sampleCounts[start.ordinal()] < MIN_SAMPLES) {
+            return -1;
+        }
+        double[] bucketWeights = weights[start.ordinal()];
+        double total = 0;
+        for (double weight : bucketWeights) {
+            total += weight;
+        }
+        double target = total * quantile;
+        double cumulative = 0;
+        for (int i = 0; i < bucketWeights.length - 1; i++) {
+            cumulative += bucketWeights[i];
+            if (cumulative >= target) {
+                return BUCKET_BOUNDS[i];
+            }
+        }
+        return BUCKET_BOUNDS[BUCKET_BOUNDS.length - 2];
+    }
+
+    /**
+     * 按分位数加上安全余量得到的等待时间，限制在[minMillis, maxMillis]之间；样本不足时返回defaultMillis。
+     */
+    long waitMillis(Start start, double quantile, long marginMillis, long defaultMillis,
+                    long minMillis, long maxMillis) {
+        long estimate = quantile(start, quantile);
+        if (estimate < 0) {
+            return defaultMillis;
+        }
+        return Math.max(minMillis, Math.min(maxMillis, estimate + marginMillis));
+    }
+
+    /**
+     * 例如 "冷启动p95=4.6秒(8次)，热启动样本不足(2次)"
+     */
+    String describe(double quantile) {
+        StringBuilder builder = new StringBuilder();
+        for (Start start : Start.values()) {
+            if (builder.length() > 0) {
+                builder.append('，');
+            }
+            builder.append(start == Start.COLD ? "冷启动" : "热启动");
+            long estimate = quantile(start, quantile);
+            if (estimate < 0) {
+                builder.append("样本不足");
+            } else {
+                builder.append('p').append(Math.round(quantile * 100)).append('=')
+                        .append(String.format(Locale.US, "%.1f", estimate / 1000.0)).append('秒');
+            }
+            builder.append('(').append(sampleCounts[start.ordinal()]).append("次)");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 编码为一行文本用于保存: 上次启动时间;冷启动次数;冷启动各桶权重;热启动次数;热启动各桶权重
+     */
+    String encode() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(lastLaunchTime);
+        for (Start start : Start.values()) {
+            builder.append(';').append(sampleCounts[start.ordinal()]).append(';');
+            double[] bucketWeights = weights[start.ordinal()];
+            for (int i = 0; i < bucketWeights.length; i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(String.format(Locale.US, "%.4f", bucketWeights[i]));
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 解析encode()的结果。桶的划分变化后旧数据无法对应，按格式错误处理。
+     */
+    static LaunchTimingEstimator decode(String text) {
+        LaunchTimingEstimator estimator = new LaunchTimingEstimator();
+        String[] parts = text.split(";", -1);
+        if (parts.length != 1 + 2 * Start.values().length) {
+            throw new IllegalArgumentException("启动耗时数据格式错误: " + text);
+        }
+        estimator.lastLaunchTime = Long.parseLong(parts[0]);
+        for (Start start : Start.values()) {
+            int index = 1 + 2 * start.ordinal();
+            estimator.sampleCounts[start.ordinal()] = Integer.parseInt(parts[index]);
+            String[] values = parts[index + 1].split(",");
+            if (values.length != BUCKET_BOUNDS.length) {
+                throw new IllegalArgumentException("启动耗时分桶数量不一致: " + values.length);
+            }
+            for (int i = 0; i < values.length; i++) {
+                estimator.weights[start.ordinal()][i] = Double.parseDouble(values[i]);
+            }
+        }
+        return estimator;
+    }
+
+    private static int bucketFor(long millis) {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            if (millis <= BUCKET_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS.length - 1;
+    }
+}
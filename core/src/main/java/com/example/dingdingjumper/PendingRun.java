@@ -0,0 +1,59 @@
+package com.example.dingdingjumper;
+
+/**
+ * 已接收但还没有执行完的正式打卡，保存在PendingRunStore中。进程被杀后按这条记录恢复：
+ * 还没到执行时间的继续等待，已过执行时间但仍在有效期内的立即补打，超过有效期的放弃。
+ */
+final class PendingRun {
+
+    // 超过应执行时间30分钟仍未执行的打卡不再补打
+    static final long VALIDITY_MILLIS = 30 * 60 * 1000L;
+
+    enum Recovery {
+        RESUME,
+        CATCH_UP,
+        EXPIRED
+    }
+
+    final long runId;
+    final String type;
+    final long scheduledTime;
+    final long fireTime;
+    final int jitterSeconds;
+    final long dueTime;
+
+    /**
+     * dueTime为打卡应开始执行的时间，即闹钟触发时间加上服务内的延迟。
+     */
+    PendingRun(long runId, String type, long scheduledTime, long fireTime, int jitterSeconds, long dueTime) {
+        this.runId = runId;
+        this.type = type;
+        this.scheduledTime = scheduledTime;
+        this.fireTime = fireTime;
+        this.jitterSeconds = jitterSeconds;
+        this.dueTime = dueTime;
+    }
+
+    Recovery recoveryAt(long now) {
+        if (now < dueTime) {
+            return Recovery.RESUME;
+        }
+        return now - dueTime <= VALIDITY_MILLIS ? Recovery.CATCH_UP : Recovery.EXPIRED;
+    }
+
+    /**
+     * 编码为一行文本: runId 计划时间 触发时间 随机延迟秒数 应执行时间 类型
+     */
+    String encode() {
+        return runId + " " + scheduledTime + " " + fireTime + " " + jitterSeconds + " " + dueTime + " " + type;
+    }
+
+    static PendingRun decode(String line) {
+        String[] parts = line.trim().split(" ", 6);
+        if (parts.length != 6) {
+            throw new IllegalArgumentException("待执行打卡记录格式错误: " + line);
+        }
+        return new PendingRun(Long.parseLong(parts[0]), parts[5], Long.parseLong(parts[1]),
+                Long.parseLong(parts[2]), Integer.parseInt(parts[3]), Long.parseLong(parts[4]));
+    }
+}
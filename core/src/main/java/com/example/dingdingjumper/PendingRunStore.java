@@ -0,0 +1,100 @@
+package com.example.dingdingjumper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 待执行打卡的持久化。每个打卡一个小文件，先写临时文件并同步到磁盘再改名，
+ * 进程在任何时刻被杀都不会留下写了一半的记录。打卡结束后删除对应文件。
+ */
+final class PendingRunStore {
+
+    static final String DIRECTORY_NAME = "pending_runs";
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static PendingRunStore instance;
+
+    private final File directory;
+
+    static synchronized PendingRunStore getInstance(File filesDir) {
+        if (instance == null) {
+            instance = new PendingRunStore(new File(filesDir, DIRECTORY_NAME));
+        }
+        return instance;
+    }
+
+    PendingRunStore(File directory) {
+        this.directory = directory;
+    }
+
+    synchronized void save(PendingRun run) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建目录: " + directory);
+        }
+        File temp = new File(directory, run.runId + TEMP_SUFFIX);
+        FileOutputStream output = new FileOutputStream(temp);
+        try {
+            output.write(run.encode().getBytes(UTF_8));
+            output.getFD().sync();
+        } finally {
+            output.close();
+        }
+        if (!temp.renameTo(new File(directory, String.valueOf(run.runId)))) {
+            throw new IOException("保存待执行打卡失败: " + run.runId);
+        }
+    }
+
+    synchronized void remove(long runId) {
+        new File(directory, String.valueOf(runId)).delete();
+    }
+
+    /**
+     * 读取所有记录，无法解析的记录直接删除。
+     */
+    synchronized List<PendingRun> list() throws IOException {
+        List<PendingRun> runs = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return runs;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // 写到一半时进程被杀留下的临时文件
+                file.delete();
+                continue;
+            }
+            try {
+                runs.add(PendingRun.decode(read(file)));
+            } catch (IllegalArgumentException e) {
+                file.delete();
+            }
+        }
+        return runs;
+    }
+
+    private static String read(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] content = new byte[(int) file.length()];
+            int offset = 0;
+            while (offset < content.length) {
+                int read = input.read(content, offset, content.length - offset);
+                if (read < 0) {
+                    break;
+                }
+                offset += read;
+            }
+            return new String(content, 0, offset, UTF_8);
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.dingdingjumper;
+
+/**
+ * 在钉钉界面上核对打卡结果的三种结论。
+ */
+enum PunchVerification {
+    /** 界面上找到了打卡成功的标志 */
+    VERIFIED,
+    /** 界面上找到了打卡失败的提示 */
+    FAILED,
+    /** 没有找到任何结果，或者没有读取到窗口内容 */
+    UNKNOWN;
+
+    private static final String[] SUCCESS_MARKERS = {"打卡成功"};
+    private static final String[] FAILURE_MARKERS = {"打卡失败", "不在打卡范围", "不在考勤范围"};
+
+    /**
+     * 判断一段界面文字是否是打卡结果，不是返回null。失败提示优先于成功标志。
+     */
+    static PunchVerification match(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return null;
+        }
+        String value = text.toString();
+        for (String marker : FAILURE_MARKERS) {
+            if (value.contains(marker)) {
+                return FAILED;
+            }
+        }
+        for (String marker : SUCCESS_MARKERS) {
+            if (value.contains(marker)) {
+                return VERIFIED;
+            }
+        }
+        return null;
+    }
+}
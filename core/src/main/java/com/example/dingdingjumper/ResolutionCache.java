@@ -0,0 +1,60 @@
+package com.example.dingdingjumper;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内只解析一次的结果缓存，invalidate()后下一次get()重新解析。
+ * 解析期间发生的invalidate()会让这次结果作废：调用方仍拿到结果，但不写入缓存，
+ * 避免钉钉升级过程中解析到的旧组件被一直使用。invalidate()不加锁，不会等待正在进行的解析。
+ */
+final class ResolutionCache<T> {
+
+    interface Loader<T> {
+        T load();
+    }
+
+    private final Loader<T> loader;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile T value;
+    private int loadCount;
+
+    ResolutionCache(Loader<T> loader) {
+        this.loader = loader;
+    }
+
+    T get() {
+        T current = value;
+        if (current == null) {
+            current = load();
+        }
+        return current;
+    }
+
+    void invalidate() {
+        generation.incrementAndGet();
+        value = null;
+    }
+
+    synchronized int getLoadCount() {
+        return loadCount;
+    }
+
+    private synchronized T load() {
+        T current = value;
+        if (current != null) {
+            return current;
+        }
+
+        long startGeneration = generation.get();
+        loadCount++;
+        T result = loader.load();
+        if (generation.get() == startGeneration) {
+            value = result;
+            // 写入前后之间发生了invalidate()时撤销写入
+            if (generation.get() != startGeneration) {
+                value = null;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.dingdingjumper;
+
+/**
+ * 打卡结束后离开钉钉的方式，按从快到慢排列。
+ */
+enum ReturnStrategy {
+    // 全局返回桌面，不启动任何Activity
+    HOME("返回桌面"),
+    // 全局返回键，钉钉停在子页面时可能需要多次
+    BACK("返回键"),
+    // 显示一个不加载布局的结果页
+    RESULT_ACTIVITY("打卡结果页"),
+    // 把本应用已有的任务移到前台，不重新创建界面
+    BRING_TO_FRONT("切回本应用"),
+    // 旧版本的做法：清空任务栈重新启动主界面
+    RELAUNCH("重新打开本应用");
+
+    final String label;
+
+    ReturnStrategy(String label) {
+        this.label = label;
+    }
+
+    /**
+     * 是否通过启动Activity返回。启动Activity前需要等钉钉的界面操作结束。
+     */
+    boolean startsActivity() {
+        return this == RESULT_ACTIVITY || this == BRING_TO_FRONT || this == RELAUNCH;
+    }
+
+    static ReturnStrategy fromName(String name, ReturnStrategy defaultValue) {
+        if (name != null) {
+            for (ReturnStrategy strategy : values()) {
+                if (strategy.name().equals(name)) {
+                    return strategy;
+                }
+            }
+        }
+        return defaultValue;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.dingdingjumper;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * 每周打卡计划。把所有时段编译成按"周内分钟数"（周一00:00为0）排序的数组，
+ * 查询某时刻之后的下一次打卡只需一次二分查找。
+ * 只在工作日执行的时段会跳过工作日日历中的休息日。
+ */
+final class ScheduleEngine {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int MAX_WEEKS = 54; // 最长的节假日也不会让一年内找不到下一次打卡
+
+    // 夏令时开始时本地时间最多向后跳2小时，落在跳过区间内的时段被推后同样的时长
+    private static final int MAX_DST_SHIFT_MINUTES = 120;
+
+    /**
+     * 一次具体的打卡：计划时间（不含随机延迟）和对应的时段。
+     */
+    static final class Fire {
+        final long scheduledTime;
+        final ScheduleSlot slot;
+
+        Fire(long scheduledTime, ScheduleSlot slot) {
+            this.scheduledTime = scheduledTime;
+            this.slot = slot;
+        }
+    }
+
+    private final TimeZone timeZone;
+    private final WorkdayCalendar workdayCalendar;
+    private final int[] keys;
+    private final ScheduleSlot[] slots;
+
+    ScheduleEngine(List<ScheduleSlot> slotList, TimeZone timeZone, WorkdayCalendar workdayCalendar) {
+        this.timeZone = timeZone;
+        this.workdayCalendar = workdayCalendar;
+
+        // 展开为(周内分钟数, 时段)对并排序。同一分钟可以有多个时段（例如按工作日日历的时段和周末时段），
+        // 查询时依次检查，当天生效的第一个时段执行；完全相同的时段只保留一个
+        long[] entries = new long[slotList.size() * 7];
+        int count = 0;
+        for (int i = 0; i < slotList.size(); i++) {
+            ScheduleSlot slot = slotList.get(i);
+            for (int isoDay = 1; isoDay <= 7; isoDay++) {
+                if (slot.isOnDay(isoDay)) {
+                    long key = (isoDay - 1) * MINUTES_PER_DAY + slot.hour * 60 + slot.minute;
+                    entries[count++] = (key << 32) | i;
+                }
+            }
+        }
+        Arrays.sort(entries, 0, count);
+
+        int[] compiledKeys = new int[count];
+        ScheduleSlot[] compiledSlots = new ScheduleSlot[count];
+        int size = 0;
+        for (int i = 0; i < count; i++) {
+            int key = (int) (entries[i] >>> 32);
+            ScheduleSlot slot = slotList.get((int) entries[i]);
+            if (containsSlot(compiledKeys, compiledSlots, size, key, slot)) {
+                continue;
+            }
+            compiledKeys[size] = key;
+            compiledSlots[size] = slot;
+            size++;
+        }
+        keys = Arrays.copyOf(compiledKeys, size);
+        slots = Arrays.copyOf(compiledSlots, size);
+    }
+
+    boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    int size() {
+        return keys.length;
+    }
+
+    /**
+     * 严格晚于timeMillis的下一次打卡，没有任何时段时返回null。
+     */
+    Fire nextFireAfter(long timeMillis) {
+        if (keys.length == 0) {
+            return null;
+        }
+
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTimeInMillis(timeMillis);
+        int today = isoDay(calendar) - 1;
+        int minuteOfWeek = today * MINUTES_PER_DAY
+                + calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+
+        // 从当前分钟往前MAX_DST_SHIFT_MINUTES开始查找：夏令时开始当天，落在跳过区间内的时段被推后，
+        // 推后的时刻可能晚于当前时刻，例如02:15和02:45分别在03:15和03:45执行，03:15执行后02:45仍需执行。
+        // 是否晚于当前时刻最终由下面的比较决定；越过数组两端则进入上一周或下一周
+        int startKey = minuteOfWeek - MAX_DST_SHIFT_MINUTES;
+        int index = startKey >= 0
+                ? upperBound(keys, startKey)
+                : upperBound(keys, startKey + 7 * MINUTES_PER_DAY) - keys.length;
+        int maxSteps = keys.length * (MAX_WEEKS + 1);
+        for (int step = 0; step <= maxSteps; step++, index++) {
+            int weeks = Math.floorDiv(index, keys.length);
+            int position = Math.floorMod(index, keys.length);
+            int key = keys[position];
+
+            Calendar fire = (Calendar) calendar.clone();
+            fire.add(Calendar.DAY_OF_MONTH, key / MINUTES_PER_DAY - today + weeks * 7);
+            fire.set(Calendar.HOUR_OF_DAY, (key % MINUTES_PER_DAY) / 60);
+            fire.set(Calendar.MINUTE, key % 60);
+            fire.set(Calendar.SECOND, 0);
+            fire.set(Calendar.MILLISECOND, 0);
+
+            // 不存在的本地时间由Calendar按切换前的偏移解释，即推后跳过的时长；
+            // 重复的本地时间只取一次，因此每个时段每天恰好执行一次
+            ScheduleSlot slot = slots[position];
+            if (fire.getTimeInMillis() > timeMillis && isActiveOn(slot, fire)) {
+                return new Fire(fire.getTimeInMillis(), slot);
+            }
+        }
+        return null;
+    }
+
+    boolean isActiveOn(ScheduleSlot slot, Calendar day) {
+        return !slot.workdaysOnly || workdayCalendar == null || workdayCalendar.isWorkday(day);
+    }
+
+    static int isoDay(Calendar calendar) {
+        return (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7 + 1;
+    }
+
+    private static boolean containsSlot(int[] keys, ScheduleSlot[] slots, int size, int key, ScheduleSlot slot) {
+        for (int i = size - 1; i >= 0 && keys[i] == key; i--) {
+            if (slots[i].equals(slot)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int upperBound(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.dingdingjumper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一个每周重复的打卡时段：在哪几天、几点几分、上班还是下班、最大随机延迟。
+ * 星期用位掩码表示，第0位是周一，第6位是周日。
+ * workdaysOnly的时段不看星期，只在工作日日历中的上班日执行（含调休上班日）。
+ */
+final class ScheduleSlot {
+
+    static final int EVERY_DAY = 0x7F;
+    static final int WEEKDAYS = 0x1F;
+
+    final int dayMask;
+    final int hour;
+    final int minute;
+    final String type;
+    final int jitterSeconds;
+    final boolean workdaysOnly;
+
+    ScheduleSlot(int dayMask, int hour, int minute, String type, int jitterSeconds) {
+        this(dayMask, hour, minute, type, jitterSeconds, false);
+    }
+
+    static ScheduleSlot onWorkdays(int hour, int minute, String type, int jitterSeconds) {
+        return new ScheduleSlot(EVERY_DAY, hour, minute, type, jitterSeconds, true);
+    }
+
+    private ScheduleSlot(int dayMask, int hour, int minute, String type, int jitterSeconds, boolean workdaysOnly) {
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            throw new IllegalArgumentException("时间无效: " + hour + ":" + minute);
+        }
+        if ((dayMask & EVERY_DAY) == 0) {
+            throw new IllegalArgumentException("至少需要选择一天");
+        }
+        this.dayMask = dayMask & EVERY_DAY;
+        this.hour = hour;
+        this.minute = minute;
+        this.type = type;
+        this.jitterSeconds = Math.max(0, jitterSeconds);
+        this.workdaysOnly = workdaysOnly;
+    }
+
+    /**
+     * isoDay为1（周一）到7（周日）。
+     */
+    boolean isOnDay(int isoDay) {
+        return (dayMask & (1 << (isoDay - 1))) != 0;
+    }
+
+    /**
+     * 解析多行时段文本，每行格式为 "星期 时:分 类型 [最大随机延迟秒数]"，例如：
+     * "1-5 12:00 上班 30"、"1,3,5 13:30 下班"、"* 08:45 上班 60"。
+     * 星期1表示周一，7表示周日，*表示每天，"工作日"表示按工作日日历。空行和#开头的行被忽略。
+     */
+    static List<ScheduleSlot> parseLines(String text) {
+        List<ScheduleSlot> slots = new ArrayList<>();
+        if (text == null) {
+            return slots;
+        }
+        String[] lines = text.split("\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                slots.add(parseLine(line));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("第" + (i + 1) + "行格式错误: " + line, e);
+            }
+        }
+        return slots;
+    }
+
+    static ScheduleSlot parseLine(String line) {
+        String[] parts = line.trim().split("\\s+");
+        if (parts.length < 3 || parts.length > 4) {
+            throw new IllegalArgumentException("字段数量错误");
+        }
+
+        boolean workdaysOnly = "工作日".equals(parts[0]);
+        int dayMask = workdaysOnly ? EVERY_DAY : parseDays(parts[0]);
+        String[] time = parts[1].split(":");
+        if (time.length != 2) {
+            throw new IllegalArgumentException("时间格式错误");
+        }
+        String type = parts[2];
+        if (!"上班".equals(type) && !"下班".equals(type)) {
+            throw new IllegalArgumentException("类型只能是上班或下班");
+        }
+        int jitterSeconds = parts.length == 4 ? Integer.parseInt(parts[3]) : 0;
+        return new ScheduleSlot(dayMask, Integer.parseInt(time[0]), Integer.parseInt(time[1]), type,
+                jitterSeconds, workdaysOnly);
+    }
+
+    private static int parseDays(String days) {
+        if ("*".equals(days)) {
+            return EVERY_DAY;
+        }
+        int mask = 0;
+        for (String part : days.split(",")) {
+            int dash = part.indexOf('-');
+            int from = Integer.parseInt(dash < 0 ? part : part.substring(0, dash));
+            int to = dash < 0 ? from : Integer.parseInt(part.substring(dash + 1));
+            if (from < 1 || to > 7 || from > to) {
+                throw new IllegalArgumentException("星期范围错误: " + part);
+            }
+            for (int day = from; day <= to; day++) {
+                mask |= 1 << (day - 1);
+            }
+        }
+        return mask;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ScheduleSlot)) {
+            return false;
+        }
+        ScheduleSlot slot = (ScheduleSlot) other;
+        return dayMask == slot.dayMask && hour == slot.hour && minute == slot.minute
+                && jitterSeconds == slot.jitterSeconds && workdaysOnly == slot.workdaysOnly
+                && type.equals(slot.type);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = dayMask;
+        result = 31 * result + hour * 60 + minute;
+        result = 31 * result + type.hashCode();
+        result = 31 * result + jitterSeconds;
+        return 31 * result + (workdaysOnly ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%02d:%02d %s", hour, minute, type);
+    }
+}
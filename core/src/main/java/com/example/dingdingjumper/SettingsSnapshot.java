@@ -0,0 +1,28 @@
+package com.example.dingdingjumper;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 当前设置快照的发布点。读取只是一次volatile读；发布时整体替换，和当前快照相同时视为没有变化。
+ * SettingsStore在此基础上负责读写磁盘和通知监听器。
+ */
+final class SettingsSnapshot {
+
+    private final AtomicReference<AppSettings> current;
+
+    SettingsSnapshot(AppSettings initial) {
+        current = new AtomicReference<>(initial);
+    }
+
+    AppSettings get() {
+        return current.get();
+    }
+
+    /**
+     * 替换当前快照，返回被替换的快照；和当前快照相同时返回null，调用方不需要写盘或通知。
+     */
+    AppSettings publish(AppSettings settings) {
+        AppSettings old = current.getAndSet(settings);
+        return settings.sameAs(old) ? null : old;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.dingdingjumper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 界面启动过程的记录：各阶段耗时、首帧和可交互的时间点，以及首帧前在主线程上发生的阻塞调用
+ * （读磁盘、跨进程查询等）。阻塞调用超过BLOCKING_CALL_BUDGET时isOverBudget()为true。
+ * 时间从创建本对象开始计算。只依赖TimeSource，可以在JVM上检查。
+ */
+final class StartupReport {
+
+    // 首帧前只允许读取一次设置，其他初始化都应推迟到首帧之后或放到工作线程
+    static final int BLOCKING_CALL_BUDGET = 1;
+
+    private final TimeSource timeSource;
+    private final long startNanos;
+    private final List<String> sections = new ArrayList<>();
+    private final List<String> blockingCalls = new ArrayList<>();
+    private long firstDrawNanos = -1;
+    private long interactiveNanos = -1;
+
+    StartupReport(TimeSource timeSource) {
+        this.timeSource = timeSource;
+        this.startNanos = timeSource.elapsedRealtimeNanos();
+    }
+
+    long now() {
+        return timeSource.elapsedRealtimeNanos();
+    }
+
+    synchronized void recordSection(String name, long sectionStartNanos) {
+        sections.add(name + "=" + (now() - sectionStartNanos) / 1000000 + "ms");
+    }
+
+    /**
+     * 记录一次主线程上的阻塞调用，首帧之后的调用不计入预算。
+     */
+    synchronized void noteBlockingCall(String name) {
+        if (firstDrawNanos < 0) {
+            blockingCalls.add(name);
+        }
+    }
+
+    synchronized void markFirstDraw() {
+        if (firstDrawNanos < 0) {
+            firstDrawNanos = now();
+        }
+    }
+
+    synchronized void markInteractive() {
+        if (interactiveNanos < 0) {
+            interactiveNanos = now();
+        }
+    }
+
+    synchronized boolean isInteractive() {
+        return interactiveNanos >= 0;
+    }
+
+    synchronized int getBlockingCallCount() {
+        return blockingCalls.size();
+    }
+
+    synchronized boolean isOverBudget() {
+        return blockingCalls.size() > BLOCKING_CALL_BUDGET;
+    }
+
+    /**
+     * 界面上显示的摘要，例如 "首帧182ms，可交互240ms，首帧前阻塞调用1次(预算1次)"
+     */
+    synchronized String describeSummary() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("首帧").append(describePoint(firstDrawNanos))
+                .append("，可交互").append(describePoint(interactiveNanos))
+                .append("，首帧前阻塞调用").append(blockingCalls.size())
+                .append("次(预算").append(BLOCKING_CALL_BUDGET).append("次)");
+        if (isOverBudget()) {
+            builder.append("，超出预算");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 写入日志的完整记录，包括各阶段耗时和阻塞调用的名称。
+     */
+    synchronized String describe() {
+        return describeSummary() + "，阶段: " + sections + "，阻塞调用: " + blockingCalls;
+    }
+
+    private String describePoint(long nanos) {
+        return nanos < 0 ? "未完成" : (nanos - startNanos) / 1000000 + "ms";
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.dingdingjumper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MainActivity的启动步骤，按执行顺序排列。blocking表示该步骤在主线程上读磁盘或跨进程查询。
+ * MainActivity按这份清单埋点，首帧前阻塞步骤的数量由JVM测试对照StartupReport.BLOCKING_CALL_BUDGET检查，
+ * 新增的主线程阻塞操作必须在这里登记。
+ */
+final class StartupSequence {
+
+    enum Phase {
+        BEFORE_FIRST_DRAW,
+        AFTER_FIRST_DRAW
+    }
+
+    static final class Step {
+        final String name;
+        final Phase phase;
+        final boolean blocking;
+
+        Step(String name, Phase phase, boolean blocking) {
+            this.name = name;
+            this.phase = phase;
+            this.blocking = blocking;
+        }
+    }
+
+    static final Step SET_CONTENT_VIEW = new Step("setContentView", Phase.BEFORE_FIRST_DRAW, false);
+    static final Step INIT_VIEWS = new Step("initViews", Phase.BEFORE_FIRST_DRAW, false);
+    // SettingsStore第一次使用时读取SharedPreferences
+    static final Step LOAD_SETTINGS = new Step("loadSettings", Phase.BEFORE_FIRST_DRAW, true);
+    // 首次查询无障碍状态需要读取系统设置
+    static final Step ACCESSIBILITY_STATE = new Step("accessibilityState", Phase.AFTER_FIRST_DRAW, true);
+
+    static final List<Step> MAIN_ACTIVITY = Collections.unmodifiableList(Arrays.asList(
+            SET_CONTENT_VIEW, INIT_VIEWS, LOAD_SETTINGS, ACCESSIBILITY_STATE));
+
+    private StartupSequence() {
+    }
+
+    static int countBlockingBeforeFirstDraw(List<Step> steps) {
+        int count = 0;
+        for (Step step : steps) {
+            if (step.blocking && step.phase == Phase.BEFORE_FIRST_DRAW) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.dingdingjumper;
+
+/**
+ * 时间来源。Android上由SystemTimeSource提供，JVM测试和模拟时可以换成假时钟。
+ */
+interface TimeSource {
+
+    long elapsedRealtimeNanos();
+
+    long currentTimeMillis();
+}
@@ -0,0 +1,39 @@
+package com.example.dingdingjumper;
+
+/**
+ * 可以手动拨动的时钟，供ScheduleSimulator和JVM测试使用。墙上时间和开机时间同步前进，
+ * 不模拟用户修改系统时间。
+ */
+final class VirtualClock implements TimeSource {
+
+    private long currentTimeMillis;
+    private long elapsedRealtimeNanos;
+
+    VirtualClock(long startTimeMillis) {
+        currentTimeMillis = startTimeMillis;
+    }
+
+    @Override
+    public long elapsedRealtimeNanos() {
+        return elapsedRealtimeNanos;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+
+    void advanceBy(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("时钟不能倒退: " + millis);
+        }
+        currentTimeMillis += millis;
+        elapsedRealtimeNanos += millis * 1000000L;
+    }
+
+    void advanceTo(long timeMillis) {
+        if (timeMillis > currentTimeMillis) {
+            advanceBy(timeMillis - currentTimeMillis);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.dingdingjumper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工作日日历。每年用366位的位图表示（按一年中的第几天），判断某天是否上班只需一次位运算。
+ * 有数据的年份先按周一至周五初始化，再应用法定节假日和调休上班日；没有数据的年份按周一至周五处理，
+ * 使用第一次查询时生成并缓存的周一至周五位图，所有年份的查询都是同一次位运算。
+ *
+ * 数据格式每行一条，"休"为放假，"班"为调休上班，结束日期可省略：
+ * <pre>
+ * 休 2026-02-15 2026-02-23
+ * 班 2026-02-14
+ * </pre>
+ */
+final class WorkdayCalendar {
+
+    private static final int WORDS_PER_YEAR = 6; // 6 x 64 >= 366
+
+    // 只含周一至周五的位图，与年份数据无关，所有实例共用，生成后不再修改
+    private static final Map<Integer, long[]> DEFAULT_YEARS = new ConcurrentHashMap<>();
+
+    private final Map<Integer, long[]> years = new HashMap<>();
+
+    /**
+     * dayOfYear从1开始。
+     */
+    boolean isWorkday(int year, int dayOfYear) {
+        long[] bits = years.get(year);
+        if (bits == null) {
+            bits = defaultBitsForYear(year);
+        }
+        int index = dayOfYear - 1;
+        return (bits[index >>> 6] & (1L << (index & 63))) != 0;
+    }
+
+    boolean isWorkday(Calendar calendar) {
+        return isWorkday(calendar.get(Calendar.YEAR), calendar.get(Calendar.DAY_OF_YEAR));
+    }
+
+    boolean hasYear(int year) {
+        return years.containsKey(year);
+    }
+
+    int countWorkdays(int year) {
+        int days = daysInYear(year);
+        int count = 0;
+        for (int day = 1; day <= days; day++) {
+            if (isWorkday(year, day)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void setWorkday(int year, int dayOfYear, boolean workday) {
+        long[] bits = bitsForYear(year);
+        int index = dayOfYear - 1;
+        if (workday) {
+            bits[index >>> 6] |= 1L << (index & 63);
+        } else {
+            bits[index >>> 6] &= ~(1L << (index & 63));
+        }
+    }
+
+    /**
+     * 读取节假日数据，可以多次调用，后读取的覆盖先读取的。
+     */
+    void load(Reader source) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] parts = line.split("\\s+");
+            if (parts.length < 2 || parts.length > 3 || (!"休".equals(parts[0]) && !"班".equals(parts[0]))) {
+                throw new IOException("第" + lineNumber + "行格式错误: " + line);
+            }
+            boolean workday = "班".equals(parts[0]);
+            Calendar from = parseDate(parts[1], lineNumber);
+            Calendar to = parts.length == 3 ? parseDate(parts[2], lineNumber) : from;
+            if (to.before(from)) {
+                throw new IOException("第" + lineNumber + "行结束日期早于开始日期: " + line);
+            }
+
+            Calendar day = (Calendar) from.clone();
+            while (!day.after(to)) {
+                setWorkday(day.get(Calendar.YEAR), day.get(Calendar.DAY_OF_YEAR), workday);
+                day.add(Calendar.DAY_OF_MONTH, 1);
+            }
+        }
+    }
+
+    private long[] bitsForYear(int year) {
+        long[] bits = years.get(year);
+        if (bits == null) {
+            bits = defaultBitsForYear(year).clone();
+            years.put(year, bits);
+        }
+        return bits;
+    }
+
+    private static long[] defaultBitsForYear(int year) {
+        long[] bits = DEFAULT_YEARS.get(year);
+        if (bits == null) {
+            // 并发时可能重复生成，结果相同，保留先放入的一份
+            long[] created = createDefaultBits(year);
+            bits = DEFAULT_YEARS.putIfAbsent(year, created);
+            if (bits == null) {
+                bits = created;
+            }
+        }
+        return bits;
+    }
+
+    private static long[] createDefaultBits(int year) {
+        Calendar calendar = newCalendar();
+        calendar.set(year, Calendar.JANUARY, 1);
+        int dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK);
+        int days = calendar.getActualMaximum(Calendar.DAY_OF_YEAR);
+
+        long[] bits = new long[WORDS_PER_YEAR];
+        for (int index = 0; index < days; index++) {
+            if (dayOfWeek != Calendar.SATURDAY && dayOfWeek != Calendar.SUNDAY) {
+                bits[index >>> 6] |= 1L << (index & 63);
+            }
+            dayOfWeek = dayOfWeek == Calendar.SATURDAY ? Calendar.SUNDAY : dayOfWeek + 1;
+        }
+        return bits;
+    }
+
+    private static int daysInYear(int year) {
+        Calendar calendar = newCalendar();
+        calendar.set(year, Calendar.JANUARY, 1);
+        return calendar.getActualMaximum(Calendar.DAY_OF_YEAR);
+    }
+
+    private static Calendar parseDate(String text, int lineNumber) throws IOException {
+        String[] parts = text.split("-");
+        try {
+            if (parts.length != 3) {
+                throw new NumberFormatException(text);
+            }
+            Calendar calendar = newCalendar();
+            calendar.setLenient(false);
+            calendar.set(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) - 1, Integer.parseInt(parts[2]));
+            calendar.getTimeInMillis(); // 触发校验
+            calendar.setLenient(true);
+            return calendar;
+        } catch (RuntimeException e) {
+            throw new IOException("第" + lineNumber + "行日期无效: " + text, e);
+        }
+    }
+
+    private static Calendar newCalendar() {
+        // 只用日期字段，固定时区避免夏令时影响
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        return calendar;
+    }
+}
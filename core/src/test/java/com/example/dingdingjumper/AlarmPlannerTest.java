@@ -0,0 +1,133 @@
+package com.example.dingdingjumper;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TimeZone;
+
+import static com.example.dingdingjumper.ScheduleEngineTest.time;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AlarmPlannerTest {
+
+    private static final TimeZone SHANGHAI = TimeZone.getTimeZone("Asia/Shanghai");
+    private static final TimeZone TOKYO = TimeZone.getTimeZone("Asia/Tokyo");
+    private static final String SLOTS = "1-5 09:00 上班 60\n1-5 18:00 下班 60";
+
+    // 总是取最大随机延迟
+    private final AlarmPlanner planner = new AlarmPlanner(new JitterPlanner(new Random() {
+        @Override
+        public int nextInt(int bound) {
+            return bound - 1;
+        }
+    }));
+
+    private final ScheduleEngine engine = new ScheduleEngine(ScheduleSlot.parseLines(SLOTS), SHANGHAI, null);
+
+    @Test
+    public void plansNextSlotWithJitter() {
+        ArmedAlarm alarm = planner.plan(engine, null, time(SHANGHAI, 2026, 10, 16, 10, 0));
+
+        assertEquals(time(SHANGHAI, 2026, 10, 16, 18, 0), alarm.scheduledTime);
+        assertEquals(60, alarm.jitterSeconds);
+        assertEquals("下班", alarm.type);
+    }
+
+    @Test
+    public void keepsSavedAlarmAfterSystemTimeChangeWithoutEarlierSlot() {
+        ArmedAlarm saved = new ArmedAlarm(time(SHANGHAI, 2026, 10, 16, 18, 0), 17, "下班", false);
+
+        // 时间调回09:30，09:00已过，已保存的18:00仍是下一次打卡，随机延迟不重新生成
+        ArmedAlarm alarm = planner.plan(engine, saved, time(SHANGHAI, 2026, 10, 16, 9, 30));
+        assertTrue(alarm.sameAs(saved));
+    }
+
+    @Test
+    public void armsEarlierSlotAfterClockMovedBackADay() {
+        ArmedAlarm saved = new ArmedAlarm(time(SHANGHAI, 2026, 10, 16, 18, 0), 17, "下班", false);
+
+        // 时间调回前一天20:00，周五09:00的上班打卡在已保存的18:00之前
+        ArmedAlarm alarm = planner.plan(engine, saved, time(SHANGHAI, 2026, 10, 15, 20, 0));
+        assertEquals(time(SHANGHAI, 2026, 10, 16, 9, 0), alarm.scheduledTime);
+        assertEquals("上班", alarm.type);
+        assertEquals(60, alarm.jitterSeconds);
+    }
+
+    @Test
+    public void replansWhenEarlierSlotWasAdded() {
+        ArmedAlarm saved = new ArmedAlarm(time(SHANGHAI, 2026, 10, 16, 18, 0), 17, "下班", false);
+        ScheduleEngine withNoon = new ScheduleEngine(
+                ScheduleSlot.parseLines(SLOTS + "\n1-5 12:00 上班 60"), SHANGHAI, null);
+
+        // 10:00新增了12:00的时段，它比已登记的18:00更早
+        ArmedAlarm alarm = planner.plan(withNoon, saved, time(SHANGHAI, 2026, 10, 16, 10, 0));
+        assertEquals(time(SHANGHAI, 2026, 10, 16, 12, 0), alarm.scheduledTime);
+        assertEquals("上班", alarm.type);
+    }
+
+    @Test
+    public void replansWhenClockMovedBackBeforeEarlierSlot() {
+        ArmedAlarm saved = new ArmedAlarm(time(SHANGHAI, 2026, 10, 16, 18, 0), 17, "下班", false);
+
+        // 系统时间调回08:30，09:00的上班打卡排在已登记的18:00之前
+        ArmedAlarm alarm = planner.plan(engine, saved, time(SHANGHAI, 2026, 10, 16, 8, 30));
+        assertEquals(time(SHANGHAI, 2026, 10, 16, 9, 0), alarm.scheduledTime);
+        assertEquals("上班", alarm.type);
+    }
+
+    @Test
+    public void keepsSavedAlarmWhoseJitterHasNotElapsed() {
+        ArmedAlarm saved = new ArmedAlarm(time(SHANGHAI, 2026, 10, 16, 18, 0), 30, "下班", false);
+
+        // 计划时间已过，加上随机延迟后还没到，这次打卡不能被跳过
+        ArmedAlarm alarm = planner.plan(engine, saved, time(SHANGHAI, 2026, 10, 16, 18, 0) + 10000);
+        assertEquals(saved.scheduledTime, alarm.scheduledTime);
+        assertEquals(30, alarm.jitterSeconds);
+    }
+
+    @Test
+    public void replansAfterTimeZoneChange() {
+        ArmedAlarm saved = new ArmedAlarm(time(SHANGHAI, 2026, 10, 16, 18, 0), 17, "下班", false);
+        ScheduleEngine tokyo = new ScheduleEngine(ScheduleSlot.parseLines(SLOTS), TOKYO, null);
+
+        // 东京的18:00比上海早一小时，已保存的时刻不再对应任何时段
+        ArmedAlarm alarm = planner.plan(tokyo, saved, time(TOKYO, 2026, 10, 16, 10, 0));
+        assertEquals(time(TOKYO, 2026, 10, 16, 18, 0), alarm.scheduledTime);
+        assertEquals(60, alarm.jitterSeconds);
+    }
+
+    @Test
+    public void replansWhenSavedAlarmHasFired() {
+        ArmedAlarm saved = new ArmedAlarm(time(SHANGHAI, 2026, 10, 16, 9, 0), 20, "上班", false);
+
+        ArmedAlarm alarm = planner.plan(engine, saved, time(SHANGHAI, 2026, 10, 16, 9, 0) + 20000);
+        assertEquals(time(SHANGHAI, 2026, 10, 16, 18, 0), alarm.scheduledTime);
+    }
+
+    @Test
+    public void replansWhenSlotJitterShrank() {
+        ArmedAlarm saved = new ArmedAlarm(time(SHANGHAI, 2026, 10, 16, 18, 0), 50, "下班", false);
+        ScheduleEngine shorter = new ScheduleEngine(ScheduleSlot.parseLines("1-5 18:00 下班 10"), SHANGHAI, null);
+
+        ArmedAlarm alarm = planner.plan(shorter, saved, time(SHANGHAI, 2026, 10, 16, 10, 0));
+        assertEquals(saved.scheduledTime, alarm.scheduledTime);
+        assertEquals(10, alarm.jitterSeconds);
+    }
+
+    @Test
+    public void emptyScheduleHasNoAlarm() {
+        ScheduleEngine empty = new ScheduleEngine(ScheduleSlot.parseLines(""), SHANGHAI, null);
+        assertNull(planner.plan(empty, null, 0));
+    }
+
+    @Test
+    public void sameAsComparesAllFields() {
+        ArmedAlarm alarm = new ArmedAlarm(1000, 5, "上班", true);
+        assertTrue(alarm.sameAs(new ArmedAlarm(1000, 5, "上班", true)));
+        assertFalse(alarm.sameAs(new ArmedAlarm(1000, 5, "上班", false)));
+        assertFalse(alarm.sameAs(null));
+    }
+}
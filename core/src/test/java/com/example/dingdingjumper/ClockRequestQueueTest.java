@@ -0,0 +1,89 @@
+package com.example.dingdingjumper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ClockRequestQueueTest {
+
+    private final VirtualClock clock = new VirtualClock(0);
+    private final ClockRequestQueue queue = new ClockRequestQueue(clock);
+
+    @Test
+    public void realRequestsRunBeforeTests() {
+        ClockRun test = run(1, "test");
+        ClockRun checkOut = run(2, "下班");
+        ClockRun checkIn = run(3, "上班");
+        queue.offer(test, true);
+        queue.offer(checkOut, false);
+        queue.offer(checkIn, false);
+
+        assertSame(checkOut, queue.startNext().run);
+        assertNull(queue.startNext());
+        queue.complete();
+        assertSame(checkIn, queue.startNext().run);
+        queue.complete();
+        assertSame(test, queue.startNext().run);
+        queue.complete();
+        assertNull(queue.startNext());
+    }
+
+    @Test
+    public void coalescesWithActiveAndQueuedRequestsOfSameType() {
+        queue.offer(run(1, "上班"), false);
+        queue.startNext();
+
+        assertEquals(ClockRequestQueue.Offer.COALESCED, queue.offer(run(2, "上班"), false));
+        assertEquals(ClockRequestQueue.Offer.QUEUED, queue.offer(run(3, "下班"), false));
+        assertEquals(ClockRequestQueue.Offer.COALESCED, queue.offer(run(4, "下班"), false));
+        // 测试和正式打卡互不合并
+        assertEquals(ClockRequestQueue.Offer.QUEUED, queue.offer(run(5, "上班"), true));
+
+        assertEquals(2, queue.getDepth());
+        assertEquals(2, queue.getCoalescedCount());
+        assertEquals(5, queue.getOfferedCount());
+    }
+
+    @Test
+    public void realRequestPreemptsActiveTestOnly() {
+        queue.offer(run(1, "test"), true);
+        queue.startNext();
+        assertFalse(queue.shouldPreemptActive());
+
+        queue.offer(run(2, "test2"), true);
+        assertFalse(queue.shouldPreemptActive());
+
+        ClockRun checkIn = run(3, "上班");
+        queue.offer(checkIn, false);
+        assertTrue(queue.shouldPreemptActive());
+
+        // 测试被中断后先执行正式打卡，排队的测试在最后
+        queue.complete();
+        assertSame(checkIn, queue.startNext().run);
+        assertFalse(queue.shouldPreemptActive());
+        queue.offer(run(4, "下班"), false);
+        assertFalse(queue.shouldPreemptActive());
+    }
+
+    @Test
+    public void measuresWaitTime() {
+        queue.offer(run(1, "上班"), false);
+        queue.startNext();
+        queue.offer(run(2, "下班"), false);
+        clock.advanceBy(3000);
+        queue.complete();
+        queue.startNext();
+
+        assertEquals(3000, queue.getMaxWaitNanos() / 1000000);
+        assertEquals(1500, queue.getAverageWaitNanos() / 1000000);
+        assertEquals(1, queue.getMaxDepth());
+    }
+
+    private ClockRun run(long runId, String type) {
+        return new ClockRun(runId, type, clock);
+    }
+}
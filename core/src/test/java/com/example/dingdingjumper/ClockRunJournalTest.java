@@ -0,0 +1,111 @@
+package com.example.dingdingjumper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClockRunJournalTest {
+
+    // 与ClockRunJournal中的文件布局一致
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 64;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final VirtualClock clock = new VirtualClock(0);
+
+    @Test
+    public void keepsOnlyNewestRecordsAfterWraparound() throws Exception {
+        ClockRunJournal journal = ClockRunJournal.open(folder.newFile(), 4);
+        for (int i = 0; i < 6; i++) {
+            journal.append(finishedRun(100 + i, "上班"));
+        }
+
+        assertEquals(6, journal.getCount());
+        ClockRunJournal.Cursor cursor = journal.openCursor();
+        for (int i = 2; i < 6; i++) {
+            assertTrue(cursor.moveToNext());
+            assertEquals(i, cursor.getSequence());
+            assertEquals(100 + i, cursor.getRunId());
+        }
+        assertFalse(cursor.moveToNext());
+        assertFalse(journal.containsRun(101));
+        assertTrue(journal.containsRun(105));
+    }
+
+    @Test
+    public void storesRunDetails() throws Exception {
+        ClockRunJournal journal = ClockRunJournal.open(folder.newFile(), 4);
+        ClockRun run = new ClockRun(7, "下班", clock);
+        run.setSchedule(1000, 1500, 30);
+        run.markRecovered();
+        run.moveTo(ClockRunState.LAUNCHING);
+        clock.advanceBy(80);
+        run.fail("启动钉钉失败");
+        journal.append(run);
+
+        ClockRunJournal.Cursor cursor = journal.openCursor();
+        assertTrue(cursor.moveToNext());
+        assertEquals(1000, cursor.getScheduledTime());
+        assertEquals(1500, cursor.getFireTime());
+        assertEquals(30, cursor.getJitterSeconds());
+        assertEquals(ClockRunJournal.TYPE_CHECK_OUT, cursor.getType());
+        assertEquals(ClockRunJournal.OUTCOME_FAILED, cursor.getOutcome());
+        assertEquals(ClockRunJournal.FLAG_RECOVERED, cursor.getFlags());
+        assertEquals(80, cursor.getStepMillis(0));
+        assertEquals(-1, cursor.getStepMillis(1));
+    }
+
+    @Test
+    public void skipsTornRecordAfterReopen() throws Exception {
+        File file = folder.newFile();
+        ClockRunJournal journal = ClockRunJournal.open(file, 4);
+        for (int i = 0; i < 3; i++) {
+            journal.append(finishedRun(100 + i, "上班"));
+        }
+
+        // 模拟写第二条记录时进程被杀：序号仍是写入前的-1
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        try {
+            raw.seek(HEADER_SIZE + RECORD_SIZE);
+            raw.write(new byte[] {-1, -1, -1, -1, -1, -1, -1, -1});
+        } finally {
+            raw.close();
+        }
+
+        ClockRunJournal.Cursor cursor = ClockRunJournal.open(file, 4).openCursor();
+        assertTrue(cursor.moveToNext());
+        assertEquals(100, cursor.getRunId());
+        assertTrue(cursor.moveToNext());
+        assertEquals(102, cursor.getRunId());
+        assertFalse(cursor.moveToNext());
+    }
+
+    @Test
+    public void resetsFileWithDifferentCapacity() throws Exception {
+        File file = folder.newFile();
+        ClockRunJournal.open(file, 4).append(finishedRun(100, "上班"));
+
+        ClockRunJournal reopened = ClockRunJournal.open(file, 8);
+        assertEquals(0, reopened.getCount());
+        assertFalse(reopened.openCursor().moveToNext());
+    }
+
+    private ClockRun finishedRun(long runId, String type) {
+        ClockRun run = new ClockRun(runId, type, clock);
+        run.moveTo(ClockRunState.LAUNCHING);
+        run.moveTo(ClockRunState.WAITING_FOREGROUND);
+        run.moveTo(ClockRunState.RETURNING);
+        run.moveTo(ClockRunState.COOLDOWN);
+        run.moveTo(ClockRunState.DONE);
+        return run;
+    }
+}
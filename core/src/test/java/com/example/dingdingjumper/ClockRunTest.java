@@ -0,0 +1,84 @@
+package com.example.dingdingjumper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClockRunTest {
+
+    private final VirtualClock clock = new VirtualClock(0);
+
+    @Test
+    public void recordsTimeSpentInEachStep() {
+        ClockRun run = new ClockRun(1, "上班", clock);
+        clock.advanceBy(5);
+        run.moveTo(ClockRunState.LAUNCHING);
+        clock.advanceBy(100);
+        run.moveTo(ClockRunState.WAITING_FOREGROUND);
+        clock.advanceBy(1200);
+        run.moveTo(ClockRunState.VERIFYING);
+        clock.advanceBy(300);
+        run.moveTo(ClockRunState.RETURNING);
+        clock.advanceBy(50);
+        run.moveTo(ClockRunState.COOLDOWN);
+        clock.advanceBy(400);
+        run.moveTo(ClockRunState.DONE);
+
+        assertTrue(run.isFinished());
+        assertEquals(100, run.getStepNanos(ClockRunState.LAUNCHING) / 1000000);
+        assertEquals(1200, run.getStepNanos(ClockRunState.WAITING_FOREGROUND) / 1000000);
+        assertEquals(400, run.getStepNanos(ClockRunState.COOLDOWN) / 1000000);
+        assertEquals(-1, run.getStepNanos(ClockRunState.DONE));
+        assertEquals(2055, run.getTotalNanos() / 1000000);
+    }
+
+    @Test
+    public void skippedStepHasNoDuration() {
+        ClockRun run = new ClockRun(1, "上班", clock);
+        run.moveTo(ClockRunState.LAUNCHING);
+        run.moveTo(ClockRunState.WAITING_FOREGROUND);
+        clock.advanceBy(13000);
+        // 等待超时跳过验证
+        run.moveTo(ClockRunState.RETURNING);
+
+        assertEquals(-1, run.getStepNanos(ClockRunState.VERIFYING));
+        assertFalse(run.hasReached(ClockRunState.VERIFYING));
+        assertTrue(run.hasReached(ClockRunState.RETURNING));
+        assertEquals(13000, run.getStepNanos(ClockRunState.WAITING_FOREGROUND) / 1000000);
+    }
+
+    @Test
+    public void rejectsIllegalTransitions() {
+        ClockRun run = new ClockRun(1, "上班", clock);
+        try {
+            run.moveTo(ClockRunState.RETURNING);
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals(ClockRunState.IDLE, run.getState());
+        }
+    }
+
+    @Test
+    public void failureRemembersStepAndReason() {
+        ClockRun run = new ClockRun(1, "下班", clock);
+        run.moveTo(ClockRunState.LAUNCHING);
+        run.fail("未安装钉钉");
+
+        assertEquals(ClockRunState.FAILED, run.getState());
+        assertEquals("未安装钉钉", run.getFailureReason());
+        assertTrue(run.describeLatencies().contains("失败于LAUNCHING: 未安装钉钉"));
+    }
+
+    @Test
+    public void terminalStatesCannotFailAgain() {
+        for (ClockRunState terminal : new ClockRunState[] {ClockRunState.DONE, ClockRunState.FAILED}) {
+            assertFalse(terminal.canMoveTo(ClockRunState.FAILED));
+            for (ClockRunState next : ClockRunState.values()) {
+                assertFalse(terminal + " -> " + next, terminal.canMoveTo(next));
+            }
+        }
+    }
+}
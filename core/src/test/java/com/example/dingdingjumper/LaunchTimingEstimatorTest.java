@@ -0,0 +1,103 @@
+package com.example.dingdingjumper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LaunchTimingEstimatorTest {
+
+    private static final LaunchTimingEstimator.Start COLD = LaunchTimingEstimator.Start.COLD;
+    private static final LaunchTimingEstimator.Start WARM = LaunchTimingEstimator.Start.WARM;
+
+    @Test
+    public void classifiesByTimeSinceLastLaunch() {
+        LaunchTimingEstimator estimator = new LaunchTimingEstimator();
+        assertEquals(COLD, estimator.classify(1000000));
+
+        estimator.markLaunched(1000000);
+        assertEquals(WARM, estimator.classify(1000000 + LaunchTimingEstimator.WARM_WINDOW_MILLIS));
+        assertEquals(COLD, estimator.classify(1000000 + LaunchTimingEstimator.WARM_WINDOW_MILLIS + 1));
+        // 系统时间被往回调
+        assertEquals(COLD, estimator.classify(999999));
+    }
+
+    @Test
+    public void noEstimateWithTooFewSamples() {
+        LaunchTimingEstimator estimator = new LaunchTimingEstimator();
+        for (int i = 0; i < LaunchTimingEstimator.MIN_SAMPLES - 1; i++) {
+            estimator.record(COLD, 3000);
+        }
+        assertEquals(-1, estimator.quantile(COLD, 0.95));
+        assertEquals(13000, estimator.waitMillis(COLD, 0.95, 4000, 13000, 5000, 30000));
+    }
+
+    @Test
+    public void quantileIsUpperBoundOfBucket() {
+        LaunchTimingEstimator estimator = new LaunchTimingEstimator();
+        for (int i = 0; i < 20; i++) {
+            estimator.record(COLD, 3000);
+        }
+        long p95 = estimator.quantile(COLD, 0.95);
+        // 桶宽为15%，上界不小于样本且不超过样本的1.15倍
+        assertTrue(p95 >= 3000 && p95 <= 3450);
+        // 冷热启动分开统计
+        assertEquals(-1, estimator.quantile(WARM, 0.95));
+    }
+
+    @Test
+    public void recentSamplesOutweighOldOnes() {
+        LaunchTimingEstimator estimator = new LaunchTimingEstimator();
+        for (int i = 0; i < 30; i++) {
+            estimator.record(COLD, 8000);
+        }
+        // 换了更快的手机，慢的样本按0.9逐次衰减
+        for (int i = 0; i < 30; i++) {
+            estimator.record(COLD, 2000);
+        }
+        long p95 = estimator.quantile(COLD, 0.95);
+        assertTrue("p95=" + p95, p95 <= 2300);
+        assertTrue(estimator.quantile(COLD, 0.99) >= 8000);
+    }
+
+    @Test
+    public void waitIsClampedWithMargin() {
+        LaunchTimingEstimator estimator = new LaunchTimingEstimator();
+        for (int i = 0; i < 10; i++) {
+            estimator.record(WARM, 300);
+            estimator.record(COLD, 60000);
+        }
+        assertEquals(5000, estimator.waitMillis(WARM, 0.95, 4000, 13000, 5000, 30000));
+        assertEquals(30000, estimator.waitMillis(COLD, 0.95, 4000, 13000, 5000, 30000));
+    }
+
+    @Test
+    public void encodeRoundTrip() {
+        LaunchTimingEstimator estimator = new LaunchTimingEstimator();
+        estimator.markLaunched(123456789L);
+        for (int i = 0; i < 10; i++) {
+            estimator.record(COLD, 2500 + i * 300);
+            estimator.record(WARM, 900);
+        }
+
+        LaunchTimingEstimator decoded = LaunchTimingEstimator.decode(estimator.encode());
+        assertEquals(estimator.encode(), decoded.encode());
+        assertEquals(estimator.quantile(COLD, 0.95), decoded.quantile(COLD, 0.95));
+        assertEquals(10, decoded.getSampleCount(WARM));
+        assertEquals(WARM, decoded.classify(123456789L + 1000));
+    }
+
+    @Test
+    public void rejectsMalformedData() {
+        String[] inputs = {"", "1;2;3", "0;5;1,2,3;0;1"};
+        for (String input : inputs) {
+            try {
+                LaunchTimingEstimator.decode(input);
+                fail(input);
+            } catch (IllegalArgumentException expected) {
+                // 调用方重新统计
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.dingdingjumper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PendingRunStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void listsNothingBeforeTheFirstSave() throws Exception {
+        PendingRunStore store = new PendingRunStore(new File(folder.getRoot(), "pending_runs"));
+        assertTrue(store.list().isEmpty());
+    }
+
+    @Test
+    public void savesListsAndRemovesRecords() throws Exception {
+        PendingRunStore store = new PendingRunStore(new File(folder.getRoot(), "pending_runs"));
+        store.save(new PendingRun(1, "上班", 100, 130, 30, 130));
+        store.save(new PendingRun(2, "下班", 200, 200, 0, 260));
+
+        List<PendingRun> runs = store.list();
+        assertEquals(2, runs.size());
+        assertEquals(130, find(runs, 1).dueTime);
+        assertEquals("下班", find(runs, 2).type);
+
+        store.remove(1);
+        runs = store.list();
+        assertEquals(1, runs.size());
+        assertEquals(2, runs.get(0).runId);
+    }
+
+    @Test
+    public void overwritesTheRecordOfTheSameRun() throws Exception {
+        PendingRunStore store = new PendingRunStore(new File(folder.getRoot(), "pending_runs"));
+        store.save(new PendingRun(1, "上班", 100, 100, 0, 100));
+        store.save(new PendingRun(1, "上班", 100, 100, 0, 160));
+
+        List<PendingRun> runs = store.list();
+        assertEquals(1, runs.size());
+        assertEquals(160, runs.get(0).dueTime);
+    }
+
+    @Test
+    public void deletesLeftoverTempFilesAndUndecodableRecords() throws Exception {
+        File directory = folder.newFolder("pending_runs");
+        PendingRunStore store = new PendingRunStore(directory);
+        store.save(new PendingRun(1, "上班", 100, 100, 0, 100));
+        File temp = write(directory, "2.tmp", "2 200 200 0 200 下班");
+        File junk = write(directory, "3", "写了一半");
+
+        List<PendingRun> runs = store.list();
+        assertEquals(1, runs.size());
+        assertEquals(1, runs.get(0).runId);
+        assertFalse(temp.exists());
+        assertFalse(junk.exists());
+    }
+
+    private static PendingRun find(List<PendingRun> runs, long runId) {
+        for (PendingRun run : runs) {
+            if (run.runId == runId) {
+                return run;
+            }
+        }
+        throw new AssertionError("没有找到任务: " + runId);
+    }
+
+    private static File write(File directory, String name, String content) throws Exception {
+        File file = new File(directory, name);
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.dingdingjumper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PendingRunTest {
+
+    private static final long DUE = 1000000L;
+
+    @Test
+    public void resumesBeforeDueTime() {
+        PendingRun run = new PendingRun(1, "上班", DUE - 60000, DUE - 30000, 30, DUE);
+        assertEquals(PendingRun.Recovery.RESUME, run.recoveryAt(DUE - 30000));
+        assertEquals(PendingRun.Recovery.RESUME, run.recoveryAt(DUE - 1));
+    }
+
+    @Test
+    public void catchesUpUntilTheEndOfTheValidityWindow() {
+        PendingRun run = new PendingRun(1, "上班", DUE, DUE, 0, DUE);
+        assertEquals(PendingRun.Recovery.CATCH_UP, run.recoveryAt(DUE));
+        assertEquals(PendingRun.Recovery.CATCH_UP, run.recoveryAt(DUE + PendingRun.VALIDITY_MILLIS));
+    }
+
+    @Test
+    public void expiresAfterTheValidityWindow() {
+        PendingRun run = new PendingRun(1, "下班", DUE, DUE, 0, DUE);
+        assertEquals(PendingRun.Recovery.EXPIRED, run.recoveryAt(DUE + PendingRun.VALIDITY_MILLIS + 1));
+        assertEquals(PendingRun.Recovery.EXPIRED, run.recoveryAt(DUE + 24 * 60 * 60 * 1000L));
+    }
+
+    @Test
+    public void encodesAndDecodesAllFields() {
+        PendingRun run = PendingRun.decode(new PendingRun(42, "下班 测试", 100, 160, 60, 220).encode());
+
+        assertEquals(42, run.runId);
+        assertEquals("下班 测试", run.type);
+        assertEquals(100, run.scheduledTime);
+        assertEquals(160, run.fireTime);
+        assertEquals(60, run.jitterSeconds);
+        assertEquals(220, run.dueTime);
+    }
+
+    @Test
+    public void rejectsMalformedRecords() {
+        String[] lines = {"", "42 100 160 60 220", "42 100 x 60 220 上班", "42 100 160 60.5 220 上班"};
+        for (String line : lines) {
+            try {
+                PendingRun.decode(line);
+                fail("应拒绝: " + line);
+            } catch (IllegalArgumentException expected) {
+                // 期望的异常
+            }
+        }
+    }
+}
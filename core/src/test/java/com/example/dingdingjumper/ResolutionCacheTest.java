@@ -0,0 +1,107 @@
+package com.example.dingdingjumper;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResolutionCacheTest {
+
+    private static final class CountingLoader implements ResolutionCache.Loader<String> {
+        int loads;
+
+        @Override
+        public String load() {
+            loads++;
+            return "component" + loads;
+        }
+    }
+
+    @Test
+    public void resolvesOnce() {
+        CountingLoader loader = new CountingLoader();
+        ResolutionCache<String> cache = new ResolutionCache<>(loader);
+
+        assertEquals("component1", cache.get());
+        assertEquals("component1", cache.get());
+        assertEquals(1, cache.getLoadCount());
+    }
+
+    @Test
+    public void resolvesAgainAfterInvalidate() {
+        CountingLoader loader = new CountingLoader();
+        ResolutionCache<String> cache = new ResolutionCache<>(loader);
+
+        cache.get();
+        cache.invalidate();
+        assertEquals("component2", cache.get());
+        assertEquals("component2", cache.get());
+        assertEquals(2, cache.getLoadCount());
+    }
+
+    @Test
+    public void invalidateDuringLoadDropsResult() {
+        final AtomicReference<ResolutionCache<String>> holder = new AtomicReference<>();
+        final int[] loads = {0};
+        holder.set(new ResolutionCache<>(new ResolutionCache.Loader<String>() {
+            @Override
+            public String load() {
+                loads[0]++;
+                if (loads[0] == 1) {
+                    // 解析过程中钉钉被升级
+                    holder.get().invalidate();
+                    return "old";
+                }
+                return "new";
+            }
+        }));
+
+        assertEquals("old", holder.get().get());
+        assertEquals("new", holder.get().get());
+        assertEquals("new", holder.get().get());
+        assertEquals(2, holder.get().getLoadCount());
+    }
+
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ResolutionCache<String> cache = new ResolutionCache<>(new ResolutionCache.Loader<String>() {
+            @Override
+            public String load() {
+                loading.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "component";
+            }
+        });
+
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cache.get();
+            }
+        });
+        first.start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        Thread second = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cache.get();
+            }
+        });
+        second.start();
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertEquals(1, cache.getLoadCount());
+    }
+}
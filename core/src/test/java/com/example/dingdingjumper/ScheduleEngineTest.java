@@ -0,0 +1,110 @@
+package com.example.dingdingjumper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ScheduleEngineTest {
+
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+    private static final TimeZone SHANGHAI = TimeZone.getTimeZone("Asia/Shanghai");
+
+    @Test
+    public void findsNextSlotInSameWeek() {
+        ScheduleEngine engine = new ScheduleEngine(ScheduleSlot.parseLines("1-5 09:00 上班\n1-5 18:00 下班"),
+                SHANGHAI, null);
+
+        // 2026-10-16是周五
+        ScheduleEngine.Fire fire = engine.nextFireAfter(time(SHANGHAI, 2026, 10, 16, 10, 0));
+        assertEquals(time(SHANGHAI, 2026, 10, 16, 18, 0), fire.scheduledTime);
+        assertEquals("下班", fire.slot.type);
+
+        fire = engine.nextFireAfter(fire.scheduledTime);
+        assertEquals(time(SHANGHAI, 2026, 10, 19, 9, 0), fire.scheduledTime);
+    }
+
+    @Test
+    public void emptyScheduleHasNoFire() {
+        assertNull(new ScheduleEngine(new ArrayList<ScheduleSlot>(), SHANGHAI, null).nextFireAfter(0));
+    }
+
+    @Test
+    public void keepsBothSlotsInsideDstGap() {
+        ScheduleEngine engine = new ScheduleEngine(ScheduleSlot.parseLines("* 02:15 上班\n* 02:45 下班"),
+                NEW_YORK, null);
+
+        // 2026-03-08 02:00到03:00不存在，两个时段都推后一小时
+        List<Long> fires = firesBetween(engine, time(NEW_YORK, 2026, 3, 7, 12, 0), time(NEW_YORK, 2026, 3, 9, 0, 0));
+        assertEquals(Arrays.asList(time(NEW_YORK, 2026, 3, 8, 3, 15), time(NEW_YORK, 2026, 3, 8, 3, 45)), fires);
+    }
+
+    @Test
+    public void firesOnceInsideDstOverlap() {
+        ScheduleEngine engine = new ScheduleEngine(ScheduleSlot.parseLines("* 01:30 上班"), NEW_YORK, null);
+
+        // 2026-11-01 01:00到02:00出现两次
+        List<Long> fires = firesBetween(engine, time(NEW_YORK, 2026, 10, 31, 12, 0), time(NEW_YORK, 2026, 11, 2, 0, 0));
+        assertEquals(1, fires.size());
+    }
+
+    @Test
+    public void skipsHolidaysForWorkdaySlots() throws Exception {
+        WorkdayCalendar calendar = new WorkdayCalendar();
+        calendar.load(new java.io.StringReader("休 2026-10-01 2026-10-07\n班 2026-10-10"));
+        ScheduleEngine engine = new ScheduleEngine(Arrays.asList(ScheduleSlot.onWorkdays(9, 0, "上班", 0)),
+                SHANGHAI, calendar);
+
+        ScheduleEngine.Fire fire = engine.nextFireAfter(time(SHANGHAI, 2026, 9, 30, 10, 0));
+        // 国庆假期后的周六调休上班
+        assertEquals(time(SHANGHAI, 2026, 10, 8, 9, 0), fire.scheduledTime);
+        fire = engine.nextFireAfter(time(SHANGHAI, 2026, 10, 9, 10, 0));
+        assertEquals(time(SHANGHAI, 2026, 10, 10, 9, 0), fire.scheduledTime);
+    }
+
+    @Test
+    public void weekendSlotSharingMinuteWithWorkdaySlotStillFires() {
+        List<ScheduleSlot> slots = new ArrayList<>();
+        slots.add(ScheduleSlot.onWorkdays(9, 0, "上班", 0));
+        slots.addAll(ScheduleSlot.parseLines("6,7 09:00 上班 30"));
+        ScheduleEngine engine = new ScheduleEngine(slots, SHANGHAI, new WorkdayCalendar());
+
+        // 周五上午之后的下一次是周六的周末时段，而不是周一
+        ScheduleEngine.Fire fire = engine.nextFireAfter(time(SHANGHAI, 2026, 10, 16, 10, 0));
+        assertEquals(time(SHANGHAI, 2026, 10, 17, 9, 0), fire.scheduledTime);
+        assertEquals(30, fire.slot.jitterSeconds);
+        fire = engine.nextFireAfter(time(SHANGHAI, 2026, 10, 18, 10, 0));
+        assertEquals(time(SHANGHAI, 2026, 10, 19, 9, 0), fire.scheduledTime);
+        assertEquals(0, fire.slot.jitterSeconds);
+    }
+
+    @Test
+    public void identicalSlotsAreMerged() {
+        ScheduleEngine engine = new ScheduleEngine(ScheduleSlot.parseLines("1-5 09:00 上班\n1 09:00 上班\n1-5 09:00 上班"),
+                SHANGHAI, null);
+        assertEquals(6, engine.size());
+    }
+
+    static long time(TimeZone timeZone, int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    private static List<Long> firesBetween(ScheduleEngine engine, long start, long end) {
+        List<Long> fires = new ArrayList<>();
+        ScheduleEngine.Fire fire = engine.nextFireAfter(start);
+        while (fire != null && fire.scheduledTime < end) {
+            fires.add(fire.scheduledTime);
+            fire = engine.nextFireAfter(fire.scheduledTime);
+        }
+        return fires;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.dingdingjumper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StartupReportTest {
+
+    @Test
+    public void staysWithinBudgetForOneCallBeforeFirstDraw() {
+        StartupReport report = new StartupReport(new VirtualClock(0));
+        report.noteBlockingCall("SettingsStore");
+        report.markFirstDraw();
+
+        assertEquals(1, report.getBlockingCallCount());
+        assertFalse(report.isOverBudget());
+        assertFalse(report.describeSummary().contains("超出预算"));
+    }
+
+    @Test
+    public void exceedsBudgetForTwoCallsBeforeFirstDraw() {
+        StartupReport report = new StartupReport(new VirtualClock(0));
+        report.noteBlockingCall("DiskReadViolation@SettingsStore.<init>");
+        report.noteBlockingCall("DiskReadViolation@ClockRunJournal.open");
+
+        assertTrue(report.isOverBudget());
+        assertTrue(report.describeSummary().endsWith("首帧前阻塞调用2次(预算1次)，超出预算"));
+    }
+
+    @Test
+    public void ignoresCallsAfterFirstDraw() {
+        StartupReport report = new StartupReport(new VirtualClock(0));
+        report.noteBlockingCall("SettingsStore");
+        report.markFirstDraw();
+        report.noteBlockingCall("ClockRunJournal");
+        report.noteBlockingCall("PendingRunStore");
+
+        assertEquals(1, report.getBlockingCallCount());
+        assertFalse(report.isOverBudget());
+        assertFalse(report.describe().contains("ClockRunJournal"));
+    }
+
+    @Test
+    public void recordsSectionsInOrderWithTheirDurations() {
+        VirtualClock clock = new VirtualClock(0);
+        StartupReport report = new StartupReport(clock);
+
+        long start = report.now();
+        clock.advanceBy(30);
+        report.recordSection("inflate", start);
+        start = report.now();
+        clock.advanceBy(12);
+        report.recordSection("loadSettings", start);
+
+        assertTrue(report.describe().contains("阶段: [inflate=30ms, loadSettings=12ms]"));
+    }
+
+    @Test
+    public void firstDrawAndInteractiveKeepTheFirstMark() {
+        VirtualClock clock = new VirtualClock(0);
+        StartupReport report = new StartupReport(clock);
+        assertEquals("首帧未完成，可交互未完成，首帧前阻塞调用0次(预算1次)", report.describeSummary());
+        assertFalse(report.isInteractive());
+
+        clock.advanceBy(180);
+        report.markFirstDraw();
+        clock.advanceBy(60);
+        report.markInteractive();
+        clock.advanceBy(500);
+        report.markFirstDraw();
+        report.markInteractive();
+
+        assertTrue(report.isInteractive());
+        assertEquals("首帧180ms，可交互240ms，首帧前阻塞调用0次(预算1次)", report.describeSummary());
+    }
+}
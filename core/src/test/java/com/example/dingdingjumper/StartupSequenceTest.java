@@ -0,0 +1,66 @@
+package com.example.dingdingjumper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StartupSequenceTest {
+
+    @Test
+    public void mainActivityStaysWithinBlockingCallBudget() {
+        StartupReport report = replay(StartupSequence.MAIN_ACTIVITY);
+
+        assertTrue(StartupSequence.countBlockingBeforeFirstDraw(StartupSequence.MAIN_ACTIVITY)
+                <= StartupReport.BLOCKING_CALL_BUDGET);
+        assertFalse(report.describe(), report.isOverBudget());
+        assertTrue(report.isInteractive());
+    }
+
+    @Test
+    public void mainActivityRecordsStepsInOrder() {
+        StartupReport report = replay(StartupSequence.MAIN_ACTIVITY);
+
+        assertTrue(report.describe(), report.describe().contains(
+                "阶段: [setContentView=10ms, initViews=10ms, loadSettings=10ms, accessibilityState=10ms]"));
+    }
+
+    @Test
+    public void extraBlockingStepBeforeFirstDrawExceedsBudget() {
+        List<StartupSequence.Step> steps = new ArrayList<>(StartupSequence.MAIN_ACTIVITY);
+        steps.add(1, new StartupSequence.Step("readJournal", StartupSequence.Phase.BEFORE_FIRST_DRAW, true));
+
+        assertEquals(2, StartupSequence.countBlockingBeforeFirstDraw(steps));
+        assertTrue(replay(steps).isOverBudget());
+    }
+
+    /**
+     * 按MainActivity的方式执行步骤：首帧前的步骤、首帧、首帧后的步骤、可交互，每个步骤耗时10ms。
+     */
+    private static StartupReport replay(List<StartupSequence.Step> steps) {
+        VirtualClock clock = new VirtualClock(0);
+        StartupReport report = new StartupReport(clock);
+        for (StartupSequence.Phase phase : StartupSequence.Phase.values()) {
+            if (phase == StartupSequence.Phase.AFTER_FIRST_DRAW) {
+                report.markFirstDraw();
+            }
+            for (StartupSequence.Step step : steps) {
+                if (step.phase != phase) {
+                    continue;
+                }
+                long start = report.now();
+                if (step.blocking) {
+                    report.noteBlockingCall(step.name);
+                }
+                clock.advanceBy(10);
+                report.recordSection(step.name, start);
+            }
+        }
+        report.markInteractive();
+        return report;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.dingdingjumper;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WorkdayCalendarTest {
+
+    @Test
+    public void yearWithoutDataUsesMondayToFriday() {
+        WorkdayCalendar calendar = new WorkdayCalendar();
+        assertFalse(calendar.hasYear(2026));
+        assertTrue(calendar.isWorkday(day(2026, 10, 16)));
+        assertFalse(calendar.isWorkday(day(2026, 10, 17)));
+        assertEquals(261, calendar.countWorkdays(2026));
+    }
+
+    @Test
+    public void queryingYearWithoutDataDoesNotAddData() {
+        WorkdayCalendar calendar = new WorkdayCalendar();
+        assertTrue(calendar.isWorkday(day(2027, 1, 1)));
+        assertFalse(calendar.isWorkday(day(2027, 1, 2)));
+        // 2028年是闰年，12月31日是周日
+        assertTrue(calendar.isWorkday(day(2028, 12, 29)));
+        assertFalse(calendar.isWorkday(day(2028, 12, 31)));
+        assertEquals(260, calendar.countWorkdays(2028));
+        assertFalse(calendar.hasYear(2027));
+        assertFalse(calendar.hasYear(2028));
+    }
+
+    @Test
+    public void dataForOneInstanceDoesNotChangeDefaults() throws IOException {
+        WorkdayCalendar withData = new WorkdayCalendar();
+        withData.load(new StringReader("休 2027-01-01"));
+        assertFalse(withData.isWorkday(day(2027, 1, 1)));
+        assertTrue(new WorkdayCalendar().isWorkday(day(2027, 1, 1)));
+    }
+
+    @Test
+    public void appliesHolidaysAndMakeUpDays() throws IOException {
+        WorkdayCalendar calendar = new WorkdayCalendar();
+        calendar.load(new StringReader("# 国庆\n休 2026-10-01 2026-10-07\n班 2026-10-10\n"));
+
+        assertTrue(calendar.hasYear(2026));
+        assertFalse(calendar.isWorkday(day(2026, 10, 1)));
+        assertFalse(calendar.isWorkday(day(2026, 10, 7)));
+        assertTrue(calendar.isWorkday(day(2026, 10, 8)));
+        assertTrue(calendar.isWorkday(day(2026, 10, 10)));
+        // 10月1日至7日中有5个周一至周五
+        assertEquals(261 - 5 + 1, calendar.countWorkdays(2026));
+    }
+
+    @Test
+    public void laterDataOverridesEarlier() throws IOException {
+        WorkdayCalendar calendar = new WorkdayCalendar();
+        calendar.load(new StringReader("休 2026-12-31"));
+        calendar.load(new StringReader("班 2026-12-31"));
+        assertTrue(calendar.isWorkday(day(2026, 12, 31)));
+    }
+
+    @Test
+    public void rangeCanCrossYears() throws IOException {
+        WorkdayCalendar calendar = new WorkdayCalendar();
+        calendar.load(new StringReader("休 2026-12-31 2027-01-01"));
+        assertFalse(calendar.isWorkday(day(2026, 12, 31)));
+        assertFalse(calendar.isWorkday(day(2027, 1, 1)));
+        assertTrue(calendar.hasYear(2027));
+    }
+
+    @Test
+    public void rejectsMalformedLines() {
+        String[] lines = {"放 2026-10-01", "休", "休 2026-10-07 2026-10-01"};
+        for (String line : lines) {
+            try {
+                new WorkdayCalendar().load(new StringReader(line));
+                fail(line);
+            } catch (IOException expected) {
+                assertTrue(expected.getMessage().startsWith("第1行"));
+            }
+        }
+    }
+
+    private static Calendar day(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("Asia/Shanghai"));
+        calendar.clear();
+        calendar.set(year, month - 1, day);
+        return calendar;
+    }
+}